@@ -5,23 +5,57 @@ import java.util.*;
 import ch.epfl.gameboj.component.Component;
 
 /**
- * CS-108 
- * Bus.java 
+ * CS-108
+ * Bus.java
  * Purpose: Representing the bus of addresses and data,
- * connecting the {@link Component}s of {@link GameBoy} 
- * 
+ * connecting the {@link Component}s of {@link GameBoy}
+ *
+ * The address space is split into 256 pages of 256 bytes, one per value of
+ * the high byte of the address. Every page holds, in order of attachment, the
+ * components that can answer an access to one of its addresses, so that a read
+ * or a write only visits the components owning the page instead of all of the
+ * components attached to the bus.
+ *
+ * A page can moreover be mapped directly onto an array of bytes by the
+ * component owning it, when it holds plain memory. Reads of a mapped page
+ * (and writes to it, if the mapping is writable) then index the array without
+ * going through any component; writes to a writable mapped page are only
+ * forwarded to the other components attached to it.
+ *
  * @author Sara Djambazovska
  * @author Marouane Jaakik
  *
  */
 public final class Bus {
 
-    private final ArrayList<Component> bus = new ArrayList<>();
+    private static final int ADDRESS_SPACE = 0x10000;
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGES = ADDRESS_SPACE >>> PAGE_BITS;
+    private static final Component[] NO_COMPONENTS = new Component[0];
+
+    private final Component[][] pages = new Component[PAGES][];
+    private final byte[][] memory = new byte[PAGES][];
+    private final byte[][] writableMemory = new byte[PAGES][];
+    private final int[] offsets = new int[PAGES];
+    private final Component[] owners = new Component[PAGES];
+    private final Component[][] snoopers = new Component[PAGES][];
+
+    /**
+     * Public constructor that constructs a bus to which no component is
+     * attached yet
+     */
+    public Bus() {
+        Arrays.fill(pages, NO_COMPONENTS);
+    }
 
     /**
      * Attaches the given argument component to the bus, throws
-     * {@link NullPointerException} if the argument is null
-     * 
+     * {@link NullPointerException} if the argument is null. The component is
+     * attached to the whole address space, meaning that it is given every
+     * write and asked for every read that no component attached before it
+     * answered
+     *
      * @param component
      *            {@link Component} than should be attached to the bus if not
      *            null
@@ -29,15 +63,127 @@ public final class Bus {
      *             if the given argument component is null
      */
     public void attach(Component component) {
+        attach(component, 0, ADDRESS_SPACE);
+    }
+
+    /**
+     * Attaches the given argument component to the bus, for the range of
+     * addresses going from start (included) to end (excluded) only. The
+     * component must return {@link Component#NO_DATA} for the other addresses
+     * of the pages it is attached to, as it can share them with other
+     * components. A component attached several times to the same page is
+     * only registered once in it
+     *
+     * @param component
+     *            {@link Component} than should be attached to the bus if not
+     *            null
+     * @param start
+     *            integer value of 16 bits, the first address answered by the
+     *            component
+     * @param end
+     *            integer value, the address following the last one answered
+     *            by the component, at most 0x10000
+     * @throws NullPointerException
+     *             if the given argument component is null
+     * @throws IllegalArgumentException
+     *             if the range of addresses is empty or not contained in the
+     *             16 bit address space
+     */
+    public void attach(Component component, int start, int end) {
         Objects.requireNonNull(component);
-        bus.add(component);
+        Preconditions.checkBits16(start);
+        Preconditions.checkArgument(start < end && end <= ADDRESS_SPACE);
+        for (int p = start >>> PAGE_BITS; p <= (end - 1) >>> PAGE_BITS; p++) {
+            if (!Arrays.asList(pages[p]).contains(component)) {
+                pages[p] = append(pages[p], component);
+                if (writableMemory[p] != null && component != owners[p])
+                    snoopers[p] = append(snoopers[p], component);
+            }
+        }
+    }
+
+    /**
+     * Maps the pages going from start (included) to end (excluded) directly
+     * onto the given array of bytes, the address start corresponding to the
+     * index offset of the array. The mapping replaces any previous mapping of
+     * these pages and takes precedence over the components attached to them
+     * for reads. If it is writable, the writes to these pages are stored in
+     * the array and given to the components attached to them other than the
+     * owner, otherwise they are given to all of these components as usual
+     *
+     * @param owner
+     *            {@link Component} owning the array, which is not given the
+     *            writes stored in it
+     * @param start
+     *            integer value of 16 bits, multiple of 0x100, the first
+     *            address that is mapped
+     * @param end
+     *            integer value, multiple of 0x100, the address following the
+     *            last one that is mapped, at most 0x10000
+     * @param data
+     *            byte array onto which the pages are mapped
+     * @param offset
+     *            integer value, the index of the array corresponding to the
+     *            address start
+     * @param writable
+     *            true if the writes to the pages are stored in the array
+     * @throws NullPointerException
+     *             if the owner or the array is null
+     * @throws IllegalArgumentException
+     *             if the range of addresses is empty, not contained in the 16
+     *             bit address space or does not cover whole pages
+     * @throws IndexOutOfBoundsException
+     *             if the array does not contain the whole range of addresses
+     *             from the given offset
+     */
+    public void map(Component owner, int start, int end, byte[] data,
+            int offset, boolean writable) {
+        Objects.requireNonNull(owner);
+        checkPageRange(start, end);
+        Objects.checkFromIndexSize(offset, end - start, data.length);
+        for (int p = start >>> PAGE_BITS; p < end >>> PAGE_BITS; p++) {
+            memory[p] = data;
+            writableMemory[p] = writable ? data : null;
+            offsets[p] = offset - start;
+            owners[p] = owner;
+            snoopers[p] = NO_COMPONENTS;
+            for (Component c : pages[p]) {
+                if (c != owner)
+                    snoopers[p] = append(snoopers[p], c);
+            }
+        }
+    }
+
+    /**
+     * Removes the mapping of the pages going from start (included) to end
+     * (excluded), whose accesses are given to the components attached to them
+     * again
+     *
+     * @param start
+     *            integer value of 16 bits, multiple of 0x100, the first
+     *            address that is not mapped anymore
+     * @param end
+     *            integer value, multiple of 0x100, the address following the
+     *            last one that is not mapped anymore, at most 0x10000
+     * @throws IllegalArgumentException
+     *             if the range of addresses is empty, not contained in the 16
+     *             bit address space or does not cover whole pages
+     */
+    public void unmap(int start, int end) {
+        checkPageRange(start, end);
+        for (int p = start >>> PAGE_BITS; p < end >>> PAGE_BITS; p++) {
+            memory[p] = null;
+            writableMemory[p] = null;
+            owners[p] = null;
+            snoopers[p] = null;
+        }
     }
 
     /**
      * Returns the value stored at the 16 bit address passed as an argument if
      * at least one of the components attached to the bus has a value stored at
      * this address, returns 0xFF otherwise
-     * 
+     *
      * @param address
      *            integer value of 16 bits, the address at which we want to read
      *            the stored value
@@ -49,9 +195,13 @@ public final class Bus {
      */
     public int read(int address) {
         Preconditions.checkBits16(address);
+        int p = address >>> PAGE_BITS;
+        byte[] m = memory[p];
+        if (m != null)
+            return Byte.toUnsignedInt(m[offsets[p] + address]);
         int r;
-        for (Component c : bus) {
-            r=c.read(address);
+        for (Component c : pages[address >>> PAGE_BITS]) {
+            r = c.read(address);
             if (r != Component.NO_DATA)
                 return r;
         }
@@ -59,10 +209,51 @@ public final class Bus {
     }
 
     /**
-     * Writes in all of the components attached to the bus, at the given
-     * argument address the value data passed as a second argument, if the value
-     * is 8 bits and the address is 16 bits
-     * 
+     * Reads the given number of consecutive bytes starting at the given
+     * address into the given array, as read would, but copying the mapped
+     * pages in bulk
+     *
+     * @param start
+     *            integer value of 16 bits, the address of the first byte
+     * @param data
+     *            byte array into which the bytes are read
+     * @param index
+     *            integer value, the index of the array at which the first
+     *            byte is stored
+     * @param length
+     *            integer value, the number of bytes to read
+     * @throws IllegalArgumentException
+     *             if the range of addresses is not contained in the 16 bit
+     *             address space
+     * @throws IndexOutOfBoundsException
+     *             if the array does not contain the whole range of indexes
+     */
+    public void read(int start, byte[] data, int index, int length) {
+        Preconditions.checkBits16(start);
+        Preconditions.checkArgument(
+                length >= 0 && start + length <= ADDRESS_SPACE);
+        Objects.checkFromIndexSize(index, length, data.length);
+        int address = start, end = start + length;
+        while (address < end) {
+            int p = address >>> PAGE_BITS;
+            int pageEnd = Math.min(end, (p + 1) << PAGE_BITS);
+            byte[] m = memory[p];
+            if (m != null) {
+                System.arraycopy(m, offsets[p] + address, data,
+                        index + address - start, pageEnd - address);
+            } else {
+                for (int a = address; a < pageEnd; ++a)
+                    data[index + a - start] = (byte) read(a);
+            }
+            address = pageEnd;
+        }
+    }
+
+    /**
+     * Writes in all of the components attached to the bus at the page of the
+     * given argument address the value data passed as a second argument, if
+     * the value is 8 bits and the address is 16 bits
+     *
      * @param address
      *            integer value of 16 bits, the address at which we want to
      *            write the value data in all of the components attached to the
@@ -78,7 +269,28 @@ public final class Bus {
     public void write(int address, int data) {
         Preconditions.checkBits16(address);
         Preconditions.checkBits8(data);
-        for (Component c : bus)
+        int p = address >>> PAGE_BITS;
+        byte[] m = writableMemory[p];
+        if (m != null) {
+            m[offsets[p] + address] = (byte) data;
+            for (Component c : snoopers[p])
+                c.write(address, data);
+            return;
+        }
+        for (Component c : pages[p])
             c.write(address, data);
     }
+
+    private static void checkPageRange(int start, int end) {
+        Preconditions.checkBits16(start);
+        Preconditions.checkArgument(start < end && end <= ADDRESS_SPACE
+                && (start & (PAGE_SIZE - 1)) == 0
+                && (end & (PAGE_SIZE - 1)) == 0);
+    }
+
+    private static Component[] append(Component[] components, Component c) {
+        Component[] r = Arrays.copyOf(components, components.length + 1);
+        r[r.length - 1] = c;
+        return r;
+    }
 }
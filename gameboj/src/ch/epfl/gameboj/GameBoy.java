@@ -60,13 +60,14 @@ public final class GameBoy {
                 AddressMap.ECHO_RAM_START, AddressMap.ECHO_RAM_END);
         cpu = new Cpu();
         lcdController = new LcdController(cpu);
+        cpu.setLcdController(lcdController);
         joypad= new Joypad(cpu);
         timer = new Timer(cpu);
-        bus.attach(workRamController);
-        bus.attach(timer);
-        bus.attach(echoRamController);
+        workRamController.attachTo(bus);
+        timer.attachTo(bus);
+        echoRamController.attachTo(bus);
         cpu.attachTo(bus);
-        bus.attach(bootRomController);
+        bootRomController.attachTo(bus);
         lcdController.attachTo(bus);
         joypad.attachTo(bus);
     }
@@ -120,7 +121,12 @@ public final class GameBoy {
      * Simulates the running of the {@link GameBoy} until the given cycle minus
      * one, by calling the method cycle on all of it's {@link Component}s that
      * are {@link Clocked} or throws {@link IllegalArgumentException} if more
-     * cycles have been simulated than the given argument cycle
+     * cycles have been simulated than the given argument cycle. The processor
+     * executes its instructions alone until the next cycle during which one of
+     * the other components has operations to execute, or until it writes to
+     * one of their registers, the deadlines of the components being computed
+     * again after each of these cycles, as the components can move them by
+     * interacting with each other
      * 
      * @param cycle
      *            long value, allowing to move forward the simulation of the
@@ -130,13 +136,27 @@ public final class GameBoy {
      *             cycle
      */
     public void runUntil(long cycle) {
-       Preconditions.checkArgument(cycles <= cycle);
+        Preconditions.checkArgument(cycles <= cycle);
         while (cycles < cycle) {
-            timer.cycle(cycles);
-            lcdController.cycle(cycles);
-            cpu.cycle(cycles);
-            cycles++;
+            long next = Math.min(lcdController.nextNonIdleCycle(cycles),
+                    timer.nextNonIdleCycle(cycles));
+            next = Math.min(cycle, Math.max(cycles, next));
+            cycles = cpu.runUntil(cycles, next);
+            if (cycles == next && next < cycle) {
+                // The components execute their operations of a cycle in this
+                // order
+                timer.cycle(next);
+                lcdController.cycle(next);
+                cpu.cycle(next);
+                cycles = next + 1;
+            }
         }
+        // The timer catches up with the skipped cycles only when clocked. The
+        // LCD controller is not clocked after the processor ran the last
+        // cycle, as it would see a screen turned on during that cycle one
+        // cycle too early, and its registers follow the processor anyway
+        timer.cycle(cycle - 1);
+        cycles = cycle;
     }
 
     /**
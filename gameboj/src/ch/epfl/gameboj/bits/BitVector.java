@@ -7,7 +7,8 @@ import ch.epfl.gameboj.Preconditions;
 
 /**
  * CS-108 BitVector.java 
- * Purpose: A vector of bits of length multiple of 32
+ * Purpose: A vector of bits of length multiple of 32, stored in words of 64
+ * bits, the bits of the last word beyond the size being always 0
  * 
  * @author Sara Djambazovska
  * @author Marouane Jaakik
@@ -15,11 +16,14 @@ import ch.epfl.gameboj.Preconditions;
  */
 public final class BitVector {
 
-    private final int[] vector;
+    private static final int WORD_SIZE = Long.SIZE;
+    private final long[] vector;
+    private final int size;
 
-    private BitVector(int[] v) {
+    private BitVector(long[] v, int size) {
         Objects.requireNonNull(v);
         vector = v;
+        this.size = size;
     }
 
     /**
@@ -31,11 +35,12 @@ public final class BitVector {
      *            vector of zeros or ones
      */
     public BitVector(int sizeOfBits, boolean value) {
-        Preconditions.checkArgument(
-                sizeOfBits % Integer.SIZE == 0 && sizeOfBits > 0);
-        vector = new int[Math.floorDiv(sizeOfBits, Integer.SIZE)];
+        checkSize(sizeOfBits);
+        size = sizeOfBits;
+        vector = new long[words(sizeOfBits)];
         if (value) {
-            Arrays.fill(vector, -1);
+            Arrays.fill(vector, -1L);
+            vector[vector.length - 1] &= lastWordMask(size);
         }
     }
 
@@ -52,7 +57,7 @@ public final class BitVector {
      * @return integer: number of bits in the Bit Vector
      */
     public int size() {
-        return vector.length * Integer.SIZE;
+        return size;
     }
 
     /**
@@ -65,9 +70,8 @@ public final class BitVector {
      * @return boolean: true if the tested bit is 1, false otherwise
      */
     public boolean testBit(int index) {
-        Objects.checkIndex(index, size());
-        return Bits.test(vector[Math.floorDiv(index, Integer.SIZE)],
-                index % Integer.SIZE);
+        Objects.checkIndex(index, size);
+        return (vector[index / WORD_SIZE] >>> (index % WORD_SIZE) & 1) != 0;
     }
 
     /**
@@ -76,11 +80,11 @@ public final class BitVector {
      * @return {@link BitVector}: the complement of the Bit Vector
      */
     public BitVector not() {
-        int[] v = new int[vector.length];
+        long[] v = new long[vector.length];
         for (int i = 0; i < vector.length; i++)
             v[i] = ~vector[i];
-
-        return new BitVector(v);
+        v[v.length - 1] &= lastWordMask(size);
+        return new BitVector(v, size);
     }
 
     /**
@@ -94,11 +98,11 @@ public final class BitVector {
      *         Vectors
      */
     public BitVector and(BitVector v2) {
-        Preconditions.checkArgument(v2.vector.length == this.vector.length);
-        int[] res = new int[vector.length];
+        Preconditions.checkArgument(v2.size == this.size);
+        long[] res = new long[vector.length];
         for (int i = 0; i < vector.length; i++)
             res[i] = this.vector[i] & v2.vector[i];
-        return new BitVector(res);
+        return new BitVector(res, size);
     }
 
     /**
@@ -114,11 +118,11 @@ public final class BitVector {
      */
 
     public BitVector or(BitVector v2) {
-        Preconditions.checkArgument(v2.size() == this.size());
-        int[] res = new int[v2.vector.length];
+        Preconditions.checkArgument(v2.size == this.size);
+        long[] res = new long[vector.length];
         for (int i = 0; i < vector.length; i++)
             res[i] = this.vector[i] | v2.vector[i];
-        return new BitVector(res);
+        return new BitVector(res, size);
     }
 
     /**
@@ -129,32 +133,51 @@ public final class BitVector {
         ZeroExtended, Wrapped
     }
 
-    private BitVector extract(int index, int sizeOfArray, ExtractionType type) {
-        int div = Math.floorDiv(index, Integer.SIZE);
-        int mod = Math.floorMod(index, Integer.SIZE);
-        int[] extracted = new int[sizeOfArray];
-
-        if (Math.floorMod(index, Integer.SIZE) == 0) {
-            for (int i = 0; i < sizeOfArray; i++)
-                extracted[i] = elementOfInfinite(type, div + i);
-            return new BitVector(extracted);
-        } else
-            for (int i = 0; i < sizeOfArray; i++)
-                extracted[i] = elementOfInfinite(type, (div + i)) >>> mod
-                        | elementOfInfinite(type,
-                                (div + 1 + i)) << (Integer.SIZE - mod);
-        return new BitVector(extracted);
+    private BitVector extract(int index, int sizeOfBits, ExtractionType type) {
+        long[] extracted = new long[words(sizeOfBits)];
+        if (type == ExtractionType.Wrapped) {
+            // The wrapped vector repeats itself every size bits, so from a
+            // whole number of words on, after two vectors at most
+            long[] source = size % WORD_SIZE == 0 ? vector : repeatedTwice();
+            int start = Math.floorMod(index, size);
+            int mod = start % WORD_SIZE;
+            int w = start / WORD_SIZE;
+            for (int i = 0; i < extracted.length; i++) {
+                int next = w + 1 == source.length ? 0 : w + 1;
+                extracted[i] = word(source[w], source[next], mod);
+                w = next;
+            }
+        } else {
+            int div = Math.floorDiv(index, WORD_SIZE);
+            int mod = Math.floorMod(index, WORD_SIZE);
+            for (int i = 0; i < extracted.length; i++)
+                extracted[i] = word(wordOrZero(div + i),
+                        wordOrZero(div + i + 1), mod);
+        }
+        extracted[extracted.length - 1] &= lastWordMask(sizeOfBits);
+        return new BitVector(extracted, sizeOfBits);
+    }
+
+    // The word starting at the given bit of the first of two consecutive
+    // words, the second one being shifted twice as a shift by 64 does nothing
+    private static long word(long low, long high, int mod) {
+        return low >>> mod | high << 1 << (WORD_SIZE - 1 - mod);
+    }
 
+    private long wordOrZero(int index) {
+        return index >= 0 && index < vector.length ? vector[index] : 0;
     }
 
-    private int elementOfInfinite(ExtractionType type, int index) {
-        if (index >= 0 && index < vector.length)
-            return vector[index];
-        if (type == ExtractionType.ZeroExtended) {
-            return 0;
-        } else {
-            return vector[Math.floorMod(index, vector.length)];
+    private long[] repeatedTwice() {
+        long[] twice = new long[words(2 * size)];
+        System.arraycopy(vector, 0, twice, 0, vector.length);
+        int div = size / WORD_SIZE, mod = size % WORD_SIZE;
+        for (int i = 0; i < vector.length; i++) {
+            twice[div + i] |= vector[i] << mod;
+            if (div + i + 1 < twice.length)
+                twice[div + i + 1] |= vector[i] >>> (WORD_SIZE - mod);
         }
+        return twice;
     }
 
     /**
@@ -170,10 +193,8 @@ public final class BitVector {
      * @return {@link BitVector}: the extracted Bit Vector
      */
     public BitVector extractZeroExtended(int index, int sizeOfBits) {
-        Preconditions.checkArgument(
-                sizeOfBits % Integer.SIZE == 0 && sizeOfBits > 0);
-        return extract(index, Math.floorDiv(sizeOfBits, Integer.SIZE),
-                ExtractionType.ZeroExtended);
+        checkSize(sizeOfBits);
+        return extract(index, sizeOfBits, ExtractionType.ZeroExtended);
     }
 
     /**
@@ -189,10 +210,8 @@ public final class BitVector {
      * @return {@link BitVector}: the extracted Bit Vector
      */
     public BitVector extractWrapped(int index, int sizeOfBits) {
-        Preconditions.checkArgument(
-                sizeOfBits % Integer.SIZE == 0 && sizeOfBits > 0);
-        return extract(index, Math.floorDiv(sizeOfBits, Integer.SIZE),
-                ExtractionType.Wrapped);
+        checkSize(sizeOfBits);
+        return extract(index, sizeOfBits, ExtractionType.Wrapped);
     }
 
     /**
@@ -211,21 +230,203 @@ public final class BitVector {
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        for (int i = vector.length - 1; i >= 0; i--)
-            sb.append(String.format("%32s", Integer.toBinaryString(vector[i]))
+        for (int i = size / Integer.SIZE - 1; i >= 0; i--)
+            sb.append(String.format("%32s", Integer.toBinaryString(integer(i)))
                     .replace(' ', '0'));
         return sb.toString();
     }
 
     @Override
     public boolean equals(Object o) {
-        return (o instanceof BitVector)
+        return (o instanceof BitVector) && size == ((BitVector) o).size
                 && Arrays.equals(this.vector, ((BitVector) o).vector);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(this.vector);
+        // The hash of the array of the integers of 32 bits of the vector
+        int hash = 1;
+        for (int i = 0; i < size / Integer.SIZE; i++)
+            hash = 31 * hash + integer(i);
+        return hash;
+    }
+
+    private int integer(int index) {
+        return (int) (vector[index / 2] >>> (index % 2 * Integer.SIZE));
+    }
+
+    private static void checkSize(int sizeOfBits) {
+        Preconditions.checkArgument(
+                sizeOfBits % Integer.SIZE == 0 && sizeOfBits > 0);
+    }
+
+    private static int words(int sizeOfBits) {
+        return (sizeOfBits + WORD_SIZE - 1) / WORD_SIZE;
+    }
+
+    // The bits of the last word of a vector of the given size that are
+    // inside the vector
+    private static long lastWordMask(int sizeOfBits) {
+        return -1L >>> (-sizeOfBits & (WORD_SIZE - 1));
+    }
+
+    /**
+     * Represents a mutable vector of bits, whose operations modify it in place
+     * so that it can be reused to compute a {@link BitVector} from others
+     * without building the intermediate vectors
+     */
+    public static final class Mutable {
+
+        private final long[] vector;
+        private final int size;
+
+        /**
+         * Constructs a mutable vector of zeros of the given size
+         * 
+         * @param sizeOfBits
+         *            integer: the number of bits, a positive multiple of 32
+         * @throws IllegalArgumentException
+         *             if the size is not a positive multiple of 32
+         */
+        public Mutable(int sizeOfBits) {
+            checkSize(sizeOfBits);
+            size = sizeOfBits;
+            vector = new long[words(sizeOfBits)];
+        }
+
+        /**
+         * Constructs a mutable vector holding the bits of the given one
+         * 
+         * @param v
+         *            {@link BitVector}: the initial bits of the vector
+         */
+        public Mutable(BitVector v) {
+            size = v.size;
+            vector = v.vector.clone();
+        }
+
+        /**
+         * Returns the size of the vector
+         * 
+         * @return integer: number of bits in the vector
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Replaces the bits of the vector by those of the given one
+         * 
+         * @param v
+         *            {@link BitVector}: the bits to copy
+         * @throws IllegalArgumentException
+         *             if the two vectors have different number of bits
+         * @return {@link Mutable}: the vector itself
+         */
+        public Mutable set(BitVector v) {
+            checkSameSize(v);
+            System.arraycopy(v.vector, 0, vector, 0, vector.length);
+            return this;
+        }
+
+        /**
+         * Complements the vector
+         * 
+         * @return {@link Mutable}: the vector itself
+         */
+        public Mutable not() {
+            for (int i = 0; i < vector.length; i++)
+                vector[i] = ~vector[i];
+            vector[vector.length - 1] &= lastWordMask(size);
+            return this;
+        }
+
+        /**
+         * Replaces the vector by its conjunction with the given one
+         * 
+         * @param v
+         *            {@link BitVector}: the other operand
+         * @throws IllegalArgumentException
+         *             if the two vectors have different number of bits
+         * @return {@link Mutable}: the vector itself
+         */
+        public Mutable and(BitVector v) {
+            checkSameSize(v);
+            for (int i = 0; i < vector.length; i++)
+                vector[i] &= v.vector[i];
+            return this;
+        }
+
+        /**
+         * Replaces the vector by its disjunction with the given one
+         * 
+         * @param v
+         *            {@link BitVector}: the other operand
+         * @throws IllegalArgumentException
+         *             if the two vectors have different number of bits
+         * @return {@link Mutable}: the vector itself
+         */
+        public Mutable or(BitVector v) {
+            checkSameSize(v);
+            for (int i = 0; i < vector.length; i++)
+                vector[i] |= v.vector[i];
+            return this;
+        }
+
+        /**
+         * Replaces the vector by its disjunction with the conjunction of the
+         * two given ones, as or(a.and(b)) would do
+         * 
+         * @param a
+         *            {@link BitVector}: the first operand of the conjunction
+         * @param b
+         *            {@link BitVector}: the second operand of the conjunction
+         * @throws IllegalArgumentException
+         *             if the vectors have different number of bits
+         * @return {@link Mutable}: the vector itself
+         */
+        public Mutable orAnd(BitVector a, BitVector b) {
+            checkSameSize(a);
+            checkSameSize(b);
+            for (int i = 0; i < vector.length; i++)
+                vector[i] |= a.vector[i] & b.vector[i];
+            return this;
+        }
+
+        /**
+         * Replaces the bits of the vector by those of the given one where the
+         * given mask is 1, as and(mask.not()).or(v.and(mask)) would do
+         * 
+         * @param v
+         *            {@link BitVector}: the bits replacing those of the vector
+         * @param mask
+         *            {@link BitVector}: the bits to replace
+         * @throws IllegalArgumentException
+         *             if the vectors have different number of bits
+         * @return {@link Mutable}: the vector itself
+         */
+        public Mutable blend(BitVector v, BitVector mask) {
+            checkSameSize(v);
+            checkSameSize(mask);
+            for (int i = 0; i < vector.length; i++)
+                vector[i] = vector[i] & ~mask.vector[i]
+                        | v.vector[i] & mask.vector[i];
+            return this;
+        }
+
+        /**
+         * Builds the {@link BitVector} of the current bits of the vector,
+         * which can still be modified afterwards
+         * 
+         * @return {@link BitVector}: a copy of the vector
+         */
+        public BitVector toBitVector() {
+            return new BitVector(vector.clone(), size);
+        }
+
+        private void checkSameSize(BitVector v) {
+            Preconditions.checkArgument(v.size == size);
+        }
     }
 
     /**
@@ -234,15 +435,16 @@ public final class BitVector {
      */
     public static final class Builder {
 
-        private int[] vector;
-        private static final int BYTE_MASK = 0xFF;
+        private long[] vector;
+        private final int size;
+        private static final long BYTE_MASK = 0xFF;
 
-        private static final int NUMBER_OF_BYTES = Integer.SIZE / Byte.SIZE;
+        private static final int NUMBER_OF_BYTES = Long.SIZE / Byte.SIZE;
 
         public Builder(int sizeOfBits) {
-            Preconditions.checkArgument(
-                    sizeOfBits % Integer.SIZE == 0 && sizeOfBits > 0);
-            vector = new int[sizeOfBits / Integer.SIZE];
+            checkSize(sizeOfBits);
+            size = sizeOfBits;
+            vector = new long[words(sizeOfBits)];
         }
 
         /**
@@ -266,17 +468,13 @@ public final class BitVector {
         public Builder setByte(int index, int valueByte) {
             if (!Objects.nonNull(vector))
                 throw new IllegalStateException();
-            Objects.checkIndex(index, vector.length * NUMBER_OF_BYTES);
+            Objects.checkIndex(index, size / Byte.SIZE);
             Preconditions.checkBits8(valueByte);
-            if (!Objects.nonNull(vector))
-                throw new IllegalStateException();
-            else {
-                vector[Math.floorDiv(index, NUMBER_OF_BYTES)] = (vector[Math
-                        .floorDiv(index, NUMBER_OF_BYTES)]
-                        & ~(BYTE_MASK << (index * Byte.SIZE) % Integer.SIZE))
-                        | (valueByte << (index * Byte.SIZE) % Integer.SIZE);
-                return this;
-            }
+            int i = index / NUMBER_OF_BYTES;
+            int shift = index % NUMBER_OF_BYTES * Byte.SIZE;
+            vector[i] = vector[i] & ~(BYTE_MASK << shift)
+                    | (long) valueByte << shift;
+            return this;
         }
 
         /**
@@ -287,7 +485,7 @@ public final class BitVector {
         public BitVector build() {
             if (!Objects.nonNull(vector))
                 throw new IllegalStateException();
-            BitVector build = new BitVector(vector);
+            BitVector build = new BitVector(vector, size);
             this.vector = null;
             return build;
         }
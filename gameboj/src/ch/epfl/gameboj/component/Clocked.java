@@ -19,4 +19,20 @@ public interface Clocked {
      *            {@link Component} should execute all of the operations
      */
     public abstract void cycle(long cycle);
+
+    /**
+     * Returns the index of the first cycle, not before the given one, during
+     * which the {@link Component} has to execute operations, assuming that no
+     * other component interacts with it in the meantime, or
+     * {@link Long#MAX_VALUE} if it stays idle until it does. By default, a
+     * component has operations to execute during every cycle
+     * 
+     * @param cycle
+     *            long value giving the index of the current cycle
+     * @return long value, the index of the next cycle during which the
+     *         {@link Component} has to execute operations
+     */
+    public default long nextNonIdleCycle(long cycle) {
+        return cycle;
+    }
 }
@@ -1,6 +1,7 @@
 package ch.epfl.gameboj.component;
 
 import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.GameBoy;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.cpu.Cpu;
@@ -36,6 +37,11 @@ public final class Joypad implements Component {
         this.cpu = cpu;
     }
 
+    @Override
+    public void attachTo(Bus bus) {
+        bus.attach(this, AddressMap.REG_P1, AddressMap.REG_P1 + 1);
+    }
+
     @Override
     public int read(int address) {
         return address == AddressMap.REG_P1 ? Bits.complement8(calculateP1())
@@ -24,8 +24,15 @@ import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
  */
 public final class Timer implements Component, Clocked {
 
+    private static final int[] SELECTED_BITS = { 9, 3, 5, 7 };
+    private static final int COUNTER_STEP = 4;
+
     private Cpu cpu;
+    // The counter and TIMA are only stored as they were at the base cycle,
+    // their current values are computed from the number of cycles elapsed
     private int TIMA, timer, TAC, TMA;
+    private long baseCycle = -1, lastCycle = -1;
+    private long overflowCycle = Long.MAX_VALUE;
 
     /**
      * Public constructor that constructs the {@link Timer} associated to the
@@ -49,10 +56,32 @@ public final class Timer implements Component, Clocked {
      */
     @Override
     public void cycle(long cycle) {
-        boolean s0 = state();
-        timer = Bits.clip(16, timer + 4);
-        incIfChange(s0);
+        if (cycle <= lastCycle)
+            return;
+        lastCycle = cycle;
+        // Nothing but the overflow of TIMA needs to be simulated
+        if (cycle >= overflowCycle)
+            rebase(cycle);
+    }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Clocked#nextNonIdleCycle(long)
+     */
+    @Override
+    public long nextNonIdleCycle(long cycle) {
+        return overflowCycle;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Component#attachTo(ch.epfl.gameboj.Bus)
+     */
+    @Override
+    public void attachTo(Bus bus) {
+        bus.attach(this, AddressMap.REG_DIV, AddressMap.REG_TAC + 1);
     }
 
     /*
@@ -63,15 +92,18 @@ public final class Timer implements Component, Clocked {
     @Override
     public int read(int address) {
         Preconditions.checkBits16(address);
+        // The processor can access the timer between two of its cycles
+        cycle(cpu.currentCycle());
         switch (address) {
         case AddressMap.REG_TAC:
             return TAC;
         case AddressMap.REG_TMA:
             return TMA;
         case AddressMap.REG_TIMA:
-            return TIMA;
+            // No overflow can happen before the cycle of the next one
+            return TIMA + (int) increments(counter(lastCycle));
         case AddressMap.REG_DIV:
-            return Bits.extract(timer, 8, 8);
+            return Bits.extract((int) counter(lastCycle), 8, 8);
         default:
             return NO_DATA;
         }
@@ -86,6 +118,8 @@ public final class Timer implements Component, Clocked {
     public void write(int address, int data) {
         Preconditions.checkBits16(address);
         Preconditions.checkBits8(data);
+        cycle(cpu.currentCycle());
+        rebase(lastCycle);
         boolean s0 = state();
         switch (address) {
         case AddressMap.REG_TAC:
@@ -103,29 +137,89 @@ public final class Timer implements Component, Clocked {
             incIfChange(s0);
             break;
         }
+        overflowCycle = computeOverflowCycle();
+    }
+
+    /**
+     * Returns the value of the internal counter at the given cycle, not
+     * earlier than the base cycle, without wrapping around
+     * 
+     * @param cycle
+     *            long, the cycle
+     * @return long, the value of the counter at that cycle
+     */
+    private long counter(long cycle) {
+        return timer + COUNTER_STEP * (cycle - baseCycle);
+    }
+
+    /**
+     * Returns the number of times TIMA is incremented between the base cycle
+     * and the given counter value
+     * 
+     * @param counter
+     *            long, the value of the counter, not wrapped around
+     * @return long, the number of increments of TIMA
+     */
+    private long increments(long counter) {
+        if (!Bits.test(TAC, 2))
+            return 0;
+        int periodBits = selectedBit() + 1;
+        return (counter >>> periodBits) - (timer >>> periodBits);
+    }
+
+    /**
+     * Brings the stored counter and TIMA up to date with the given cycle,
+     * raising the interrupts of the overflows that happened in between, and
+     * computes the cycle of the next overflow
+     * 
+     * @param cycle
+     *            long, the new base cycle
+     */
+    private void rebase(long cycle) {
+        long counter = counter(cycle);
+        increment(increments(counter));
+        timer = Bits.clip(16, (int) counter);
+        baseCycle = cycle;
+        overflowCycle = computeOverflowCycle();
+    }
+
+    /**
+     * Computes the cycle at which TIMA overflows next, from the base state
+     * 
+     * @return long, the cycle of the next overflow, or Long.MAX_VALUE if the
+     *         timer is disabled
+     */
+    private long computeOverflowCycle() {
+        if (!Bits.test(TAC, 2))
+            return Long.MAX_VALUE;
+        int periodBits = selectedBit() + 1;
+        long overflow = (long) ((timer >>> periodBits) + 0x100 - TIMA)
+                << periodBits;
+        return baseCycle + (overflow - timer) / COUNTER_STEP;
+    }
+
+    private int selectedBit() {
+        return SELECTED_BITS[Bits.clip(2, TAC)];
     }
 
     private boolean state() {
-        int i = Bits.extract(TAC, 0, 2);
-        switch (i) {
-        case 0:
-            return Bits.test(TAC, 2) && Bits.test(timer, 9);
-        case 1:
-            return Bits.test(TAC, 2) && Bits.test(timer, 3);
-        case 2:
-            return Bits.test(TAC, 2) && Bits.test(timer, 5);
-        default:
-            return Bits.test(TAC, 2) && Bits.test(timer, 7);
-        }
+        return Bits.test(TAC, 2) && Bits.test(timer, selectedBit());
     }
 
     private void incIfChange(boolean before) {
-        if (before && !state()) {
-            if (TIMA == 0xff) {
-                cpu.requestInterrupt(Interrupt.TIMER);
-                TIMA = TMA;
-            } else
-                TIMA++;
+        if (before && !state())
+            increment(1);
+    }
+
+    private void increment(long count) {
+        while (count > 0) {
+            if (TIMA + count <= 0xFF) {
+                TIMA += count;
+                return;
+            }
+            count -= 0x100 - TIMA;
+            cpu.requestInterrupt(Interrupt.TIMER);
+            TIMA = TMA;
         }
     }
 }
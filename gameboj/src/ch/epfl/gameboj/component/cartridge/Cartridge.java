@@ -24,7 +24,7 @@ import ch.epfl.gameboj.component.memory.Rom;
  */
 public final class Cartridge implements Component {
 
-    private final Component mbc;
+    private final MemoryBankController mbc;
     public static final int ADDRESS_TYPE_OF_CARTRIDGE = 0x147;
     public static final int ADDRESS_RAM_SIZE = 0X149;
     private final static int[] RAM_SIZES = new int[] { 0, 2_048, 8_192,
@@ -35,10 +35,10 @@ public final class Cartridge implements Component {
      * controller and the memory attached to it passed as an argument
      * 
      * @param mbc0
-     *            {@link Component} the memory bank controller of type 0 to be
-     *            stored in the {@link Cartridge}
+     *            {@link MemoryBankController} the memory bank controller of
+     *            type 0 or 1 to be stored in the {@link Cartridge}
      */
-    private Cartridge(Component mbc) {
+    private Cartridge(MemoryBankController mbc) {
         Objects.requireNonNull(mbc);
         this.mbc = mbc;
     }
@@ -76,6 +76,20 @@ public final class Cartridge implements Component {
         }
     }
 
+    /**
+     * Maps the memory currently selected by the memory bank controller of the
+     * cartridge directly on the given bus, the mapping following the bank
+     * switches done by writing to the cartridge afterwards
+     * 
+     * @param bus
+     *            {@link Bus} on which the memory is mapped
+     * @param owner
+     *            {@link Component} giving access to the cartridge on the bus
+     */
+    public void mapTo(Bus bus, Component owner) {
+        mbc.mapTo(bus, owner);
+    }
+
     @Override
     public int read(int address) {
         Preconditions.checkBits16(address);
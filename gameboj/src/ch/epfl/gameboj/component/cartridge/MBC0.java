@@ -2,6 +2,7 @@ package ch.epfl.gameboj.component.cartridge;
 
 import java.util.Objects;
 
+import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.memory.Rom;
@@ -15,7 +16,7 @@ import ch.epfl.gameboj.component.memory.Rom;
  * @author Marouane Jaakik
  *
  */
-public final class MBC0 implements Component {
+public final class MBC0 implements MemoryBankController {
 
     private final Rom rom;
     public static final int ROM_SIZE = 0x8000;
@@ -51,4 +52,9 @@ public final class MBC0 implements Component {
     @Override
     public void write(int adress, int data) {
     }
+
+    @Override
+    public void mapTo(Bus bus, Component owner) {
+        rom.mapTo(bus, owner, 0, ROM_SIZE, 0);
+    }
 }
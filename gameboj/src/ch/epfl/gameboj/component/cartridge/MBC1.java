@@ -3,13 +3,16 @@ package ch.epfl.gameboj.component.cartridge;
 import static ch.epfl.gameboj.Preconditions.checkBits16;
 import static ch.epfl.gameboj.Preconditions.checkBits8;
 
+import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.component.memory.Rom;
 
-public final class MBC1 implements Component {
+public final class MBC1 implements MemoryBankController {
     private static final int RAM_ENABLE = 0xA;
+    private static final int ROM_BANK_SIZE = 0x4000, RAM_BANK_SIZE = 0x2000;
+    private static final int RAM_START = 0xA000;
 
     private enum Mode { MODE_0, MODE_1 };
 
@@ -21,6 +24,9 @@ public final class MBC1 implements Component {
     private int romLsb5, ramRom2;
     private final int romMask, ramMask;
 
+    private Bus bus;
+    private Component owner;
+
     public MBC1(Rom rom, int ramSize) {
         this.rom = rom;
         this.ram = new Ram(ramSize);
@@ -66,8 +72,36 @@ public final class MBC1 implements Component {
         case 5:
             if (ramEnabled)
                 ram.write(ramAddress(address), data);
-            break;
+            return;
+        default:
+            return;
+        }
+        if (bus != null)
+            mapBanks();
+    }
+
+    @Override
+    public void mapTo(Bus bus, Component owner) {
+        this.bus = bus;
+        this.owner = owner;
+        mapBanks();
+    }
+
+    private void mapBanks() {
+        // The banks are contiguous in the memories only if their sizes are
+        // powers of two holding at least one whole bank
+        if (rom.size() >= 2 * ROM_BANK_SIZE
+                && Integer.bitCount(rom.size()) == 1) {
+            rom.mapTo(bus, owner, 0, ROM_BANK_SIZE, romAddress(msb2(), 0, 0));
+            rom.mapTo(bus, owner, ROM_BANK_SIZE, 2 * ROM_BANK_SIZE,
+                    romAddress(ramRom2, romLsb5, 0));
         }
+        if (ramEnabled && ram.size() >= RAM_BANK_SIZE
+                && Integer.bitCount(ram.size()) == 1)
+            ram.mapTo(bus, owner, RAM_START, RAM_START + RAM_BANK_SIZE,
+                    ramAddress(0), true);
+        else
+            bus.unmap(RAM_START, RAM_START + RAM_BANK_SIZE);
     }
 
     private int msb2() {
@@ -0,0 +1,28 @@
+package ch.epfl.gameboj.component.cartridge;
+
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.Component;
+
+/**
+ * CS-108 
+ * MemoryBankController.java 
+ * Purpose: Representing the memory bank controller of a {@link Cartridge}, 
+ * which can map the banks of memory it currently selects directly on the {@link Bus}
+ * 
+ * @author Sara Djambazovska
+ * @author Marouane Jaakik
+ *
+ */
+interface MemoryBankController extends Component {
+
+    /**
+     * Maps the banks of memory currently selected by the controller directly
+     * on the given bus, and keeps them mapped when the selection changes
+     * 
+     * @param bus
+     *            {@link Bus} on which the memory is mapped
+     * @param owner
+     *            {@link Component} giving access to the controller on the bus
+     */
+    void mapTo(Bus bus, Component owner);
+}
@@ -19,7 +19,30 @@ import ch.epfl.gameboj.bits.Bits;
  */
 public final class Alu {
 
-    
+    /**
+     * Name of the system property which, when set to true at startup, makes
+     * the operations on 8 bits read their packed results from tables
+     * precomputed for all their operands, instead of computing them
+     */
+    public static final String TABLES_PROPERTY = "gameboj.alu.tables";
+
+    private static final boolean TABLES = Boolean.getBoolean(TABLES_PROPERTY);
+    private static final int[] ADD_TABLE = TABLES
+            ? binaryTable(Alu::computeAdd) : null;
+    private static final int[] SUB_TABLE = TABLES
+            ? binaryTable(Alu::computeSub) : null;
+    private static final int[] SHIFT_LEFT_TABLE = TABLES
+            ? unaryTable(Alu::computeShiftLeft) : null;
+    private static final int[] SHIFT_RIGHT_A_TABLE = TABLES
+            ? unaryTable(Alu::computeShiftRightA) : null;
+    private static final int[] SHIFT_RIGHT_L_TABLE = TABLES
+            ? unaryTable(Alu::computeShiftRightL) : null;
+    private static final int[] SWAP_TABLE = TABLES
+            ? unaryTable(Alu::computeSwap) : null;
+    private static final int[] ROTATE_TABLE = TABLES ? rotateTable() : null;
+    private static final int[] BCD_ADJUST_TABLE = TABLES ? bcdAdjustTable()
+            : null;
+
     private Alu() {}
     /**
      * Enumeration of the Flags
@@ -126,6 +149,13 @@ public final class Alu {
     public static int add(int l, int r, boolean c0) {
         Preconditions.checkBits8(r);
         Preconditions.checkBits8(l);
+        if (ADD_TABLE != null)
+            return ADD_TABLE[binaryIndex(l, r, c0)];
+        return computeAdd(l, r, c0);
+    }
+
+    // Computes the packed result of add for valid operands
+    private static int computeAdd(int l, int r, boolean c0) {
         int sum = c0 ? r + l + 1 : r + l;
         boolean h = c0 ? Bits.clip(4, l) + Bits.clip(4, r) + 1 > 0xf
                 : Bits.clip(4, l) + Bits.clip(4, r) > 0xf;
@@ -210,6 +240,13 @@ public final class Alu {
     public static int sub(int l, int r, boolean b0) {
         Preconditions.checkBits8(l);
         Preconditions.checkBits8(r);
+        if (SUB_TABLE != null)
+            return SUB_TABLE[binaryIndex(l, r, b0)];
+        return computeSub(l, r, b0);
+    }
+
+    // Computes the packed result of sub for valid operands
+    private static int computeSub(int l, int r, boolean b0) {
         int sub = b0 ? Bits.clip(8, l - r - 1) : Bits.clip(8, l - r);
         boolean h = b0 ? Bits.clip(4, l) - 1 < Bits.clip(4, r)
                 : Bits.clip(4, l) < Bits.clip(4, r);
@@ -247,6 +284,13 @@ public final class Alu {
      */
     public static int shiftLeft(int v) {
         Preconditions.checkBits8(v);
+        if (SHIFT_LEFT_TABLE != null)
+            return SHIFT_LEFT_TABLE[v];
+        return computeShiftLeft(v);
+    }
+
+    // Computes the packed result of shiftLeft for a valid value
+    private static int computeShiftLeft(int v) {
         int shifted = Bits.clip(8, v << 1);
         boolean c = Bits.test(v, 7);
         return packValueZNHC(shifted, shifted == 0, false, false, c);
@@ -266,6 +310,13 @@ public final class Alu {
      */
     public static int shiftRightA(int v) {
         Preconditions.checkBits8(v);
+        if (SHIFT_RIGHT_A_TABLE != null)
+            return SHIFT_RIGHT_A_TABLE[v];
+        return computeShiftRightA(v);
+    }
+
+    // Computes the packed result of shiftRightA for a valid value
+    private static int computeShiftRightA(int v) {
         int shifted = Bits.set(v >>> 1, 7, Bits.test(v >>> 1, 6));
         boolean c = Bits.test(v, 0);
         return packValueZNHC(shifted, shifted == 0, false, false, c);
@@ -284,6 +335,13 @@ public final class Alu {
      */
     public static int shiftRightL(int v) {
         Preconditions.checkBits8(v);
+        if (SHIFT_RIGHT_L_TABLE != null)
+            return SHIFT_RIGHT_L_TABLE[v];
+        return computeShiftRightL(v);
+    }
+
+    // Computes the packed result of shiftRightL for a valid value
+    private static int computeShiftRightL(int v) {
         int shifted = v >>> 1;
         boolean c = Bits.test(v, 0);
         return packValueZNHC(shifted, shifted == 0, false, false, c);
@@ -308,6 +366,14 @@ public final class Alu {
      */
     public static int rotate(RotDir d, int v, boolean c) {
         Preconditions.checkBits8(v);
+        if (ROTATE_TABLE != null)
+            return ROTATE_TABLE[rotateIndex(d, true, c, v)];
+        return computeRotate(d, v, c);
+    }
+
+    // Computes the packed result of the rotation through the carry for a
+    // valid value
+    private static int computeRotate(RotDir d, int v, boolean c) {
         int va = c ? (1 << 8 | v) : v;
         int rotated = (d == RotDir.LEFT) ? Bits.rotate(9, va, 1)
                 : Bits.rotate(9, va, -1);
@@ -332,6 +398,13 @@ public final class Alu {
      */
     public static int rotate(RotDir d, int v) {
         Preconditions.checkBits8(v);
+        if (ROTATE_TABLE != null)
+            return ROTATE_TABLE[rotateIndex(d, false, false, v)];
+        return computeRotate(d, v);
+    }
+
+    // Computes the packed result of the rotation for a valid value
+    private static int computeRotate(RotDir d, int v) {
         int rotated = (d == RotDir.LEFT) ? Bits.clip(8, Bits.rotate(8, v, 1))
                 : Bits.clip(8, Bits.rotate(8, v, -1));
         boolean c = (d == RotDir.LEFT) ? Bits.test(v, 7) : Bits.test(v, 0);
@@ -352,6 +425,13 @@ public final class Alu {
      */
     public static int swap(int v) {
         Preconditions.checkBits8(v);
+        if (SWAP_TABLE != null)
+            return SWAP_TABLE[v];
+        return computeSwap(v);
+    }
+
+    // Computes the packed result of swap for a valid value
+    private static int computeSwap(int v) {
         int LSB = Bits.clip(4, v);
         int MSB = Bits.extract(v, 4, 4);
         int res = (LSB << 4) | MSB;
@@ -399,6 +479,14 @@ public final class Alu {
      */
     public static int bcdAdjust(int v, boolean n, boolean h, boolean c) {
         Preconditions.checkBits8(v);
+        if (BCD_ADJUST_TABLE != null)
+            return BCD_ADJUST_TABLE[bcdAdjustIndex(v, n, h, c)];
+        return computeBcdAdjust(v, n, h, c);
+    }
+
+    // Computes the packed result of bcdAdjust for a valid value
+    private static int computeBcdAdjust(int v, boolean n, boolean h,
+            boolean c) {
         boolean fixL = h | (!n & (Bits.clip(4, v) > 0x9));
         boolean fixH = c | (!n & v > 0x99);
         int fix = 0;
@@ -471,6 +559,76 @@ public final class Alu {
         return packValueZNHC(v, v == 0, false, false, false);
     }
 
+    // Operation on two values of 8 bits and a carry
+    private interface BinaryOp {
+        int apply(int l, int r, boolean c);
+    }
+
+    // Operation on a value of 8 bits
+    private interface UnaryOp {
+        int apply(int v);
+    }
+
+    private static int binaryIndex(int l, int r, boolean c) {
+        return (c ? 1 << 16 : 0) | l << 8 | r;
+    }
+
+    private static int rotateIndex(RotDir d, boolean throughCarry, boolean c,
+            int v) {
+        return d.ordinal() << 10 | (throughCarry ? 1 << 9 : 0)
+                | (c ? 1 << 8 : 0) | v;
+    }
+
+    private static int bcdAdjustIndex(int v, boolean n, boolean h,
+            boolean c) {
+        return (n ? 1 << 10 : 0) | (h ? 1 << 9 : 0) | (c ? 1 << 8 : 0) | v;
+    }
+
+    // Tabulates the given operation for all its operands and carries
+    private static int[] binaryTable(BinaryOp op) {
+        int[] table = new int[2 << 16];
+        for (int l = 0; l <= 0xFF; ++l) {
+            for (int r = 0; r <= 0xFF; ++r) {
+                table[binaryIndex(l, r, false)] = op.apply(l, r, false);
+                table[binaryIndex(l, r, true)] = op.apply(l, r, true);
+            }
+        }
+        return table;
+    }
+
+    // Tabulates the given operation for all its values
+    private static int[] unaryTable(UnaryOp op) {
+        int[] table = new int[0x100];
+        for (int v = 0; v <= 0xFF; ++v)
+            table[v] = op.apply(v);
+        return table;
+    }
+
+    // Tabulates both rotations in both directions, with and without carry
+    private static int[] rotateTable() {
+        int[] table = new int[RotDir.values().length << 10];
+        for (RotDir d : RotDir.values()) {
+            for (int v = 0; v <= 0xFF; ++v) {
+                table[rotateIndex(d, false, false, v)] = computeRotate(d, v);
+                table[rotateIndex(d, true, false, v)] = computeRotate(d, v,
+                        false);
+                table[rotateIndex(d, true, true, v)] = computeRotate(d, v,
+                        true);
+            }
+        }
+        return table;
+    }
+
+    // Tabulates the decimal adjustment for all the values and flags
+    private static int[] bcdAdjustTable() {
+        int[] table = new int[1 << 11];
+        for (int i = 0; i < table.length; ++i) {
+            table[i] = computeBcdAdjust(i & 0xFF, Bits.test(i, 10),
+                    Bits.test(i, 9), Bits.test(i, 8));
+        }
+        return table;
+    }
+
     // method to pack the value and the flags in one integer of 16 bits
     private static int packValueZNHC(int v, boolean z, boolean n, boolean h,
             boolean c) {
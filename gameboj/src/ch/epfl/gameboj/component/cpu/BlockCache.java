@@ -0,0 +1,192 @@
+package ch.epfl.gameboj.component.cpu;
+
+import java.util.Arrays;
+
+import ch.epfl.gameboj.AddressMap;
+
+/**
+ * CS-108
+ * BlockCache.java
+ * Purpose: Representing the cache of the basic blocks of the {@link Cpu},
+ * sequences of instructions without jumps that are executed often enough to be
+ * decoded once and for all. Only the blocks in the cartridge read-only memory
+ * and the work random-access memory are cached: the blocks of a page of the
+ * random-access memory are dropped when the page is written to, and those of
+ * the switchable bank of the cartridge when the cartridge is written to, as it
+ * can switch banks
+ *
+ * @author Sara Djambazovska
+ * @author Marouane Jaakik
+ *
+ */
+final class BlockCache {
+
+    /**
+     * The maximal number of instructions of a block
+     */
+    static final int MAX_INSTRUCTIONS = 32;
+
+    /**
+     * The minimal number of instructions of a block, shorter sequences being
+     * executed faster one instruction at a time
+     */
+    static final int MIN_INSTRUCTIONS = 4;
+
+    private static final int HOT_THRESHOLD = 64;
+    private static final int CARTRIDGE_BANK_START = 0x4000;
+    private static final int CARTRIDGE_ROM_END = 0x8000;
+    private static final int PAGE_BITS = 8;
+
+    /**
+     * A basic block: the addresses of its instructions and their indices in
+     * the instruction table of the processor
+     */
+    static final class Block {
+        final int[] addresses, instructions;
+        final int end;
+        boolean valid = true;
+
+        Block(int[] addresses, int[] instructions, int end) {
+            this.addresses = addresses;
+            this.instructions = instructions;
+            this.end = end;
+        }
+    }
+
+    private final Block[] blocks = new Block[0x10000];
+    private final int[] hits = new int[0x10000];
+    private final boolean[] codePages = new boolean[0x10000 >>> PAGE_BITS];
+    private int[] starts = new int[64];
+    private int size = 0;
+    private int cached = 0;
+
+    /**
+     * Returns true if the blocks starting at the given address can be cached
+     *
+     * @param address
+     *            integer value of 16 bits
+     * @return true if the address is in the cartridge read-only memory or the
+     *         work random-access memory
+     */
+    static boolean isCacheable(int address) {
+        return address < CARTRIDGE_ROM_END
+                || (address >= AddressMap.WORK_RAM_START
+                        && address < AddressMap.WORK_RAM_END);
+    }
+
+    /**
+     * Returns the cached block starting at the given address, if any
+     *
+     * @param address
+     *            integer value of 16 bits
+     * @return the {@link Block} starting at the address, or null
+     */
+    Block get(int address) {
+        return blocks[address];
+    }
+
+    /**
+     * Records the execution of an instruction at the given address, which is
+     * not the start of a cached block, and returns true if the block starting
+     * there is hot and should be cached
+     *
+     * @param address
+     *            integer value of 16 bits
+     * @return true if the block starting at the address should be cached
+     */
+    boolean hit(int address) {
+        if (!isCacheable(address))
+            return false;
+        if (hits[address] < HOT_THRESHOLD)
+            ++hits[address];
+        return hits[address] == HOT_THRESHOLD;
+    }
+
+    /**
+     * Records that the block starting at the given address is too short to be
+     * cached, so that it is not decoded again
+     *
+     * @param address
+     *            integer value of 16 bits
+     */
+    void reject(int address) {
+        hits[address] = HOT_THRESHOLD + 1;
+    }
+
+    /**
+     * Caches the given block, starting at its first address
+     *
+     * @param block
+     *            the {@link Block} to cache
+     */
+    void put(Block block) {
+        int start = block.addresses[0];
+        blocks[start] = block;
+        if (size == starts.length)
+            starts = Arrays.copyOf(starts, 2 * size);
+        starts[size++] = start;
+        ++cached;
+        int lastPage = (block.end - 1) >>> PAGE_BITS;
+        for (int p = start >>> PAGE_BITS; p <= lastPage; ++p)
+            codePages[p] = true;
+    }
+
+    /**
+     * Returns the number of blocks cached so far, including those dropped
+     * since
+     *
+     * @return the number of calls to {@link #put(Block)}
+     */
+    int cachedCount() {
+        return cached;
+    }
+
+    /**
+     * Drops the cached blocks whose code may have been changed by a write of
+     * the processor at the given address
+     *
+     * @param address
+     *            integer value of 16 bits, the address written to
+     */
+    void written(int address) {
+        if (address < CARTRIDGE_BANK_START)
+            // The cartridge may have switched the bank mapped from 0x4000
+            invalidate(CARTRIDGE_BANK_START, CARTRIDGE_ROM_END);
+        else if (address < CARTRIDGE_ROM_END
+                || address == AddressMap.REG_BOOT_ROM_DISABLE)
+            // The upper bits of the bank number of an MBC1 can also switch
+            // the first bank, as can the end of the boot program
+            invalidate(0, CARTRIDGE_ROM_END);
+        else if (address >= AddressMap.ECHO_RAM_START
+                && address < AddressMap.ECHO_RAM_END)
+            written(address - (AddressMap.ECHO_RAM_START
+                    - AddressMap.WORK_RAM_START));
+        else if (codePages[address >>> PAGE_BITS]) {
+            int page = address & ~((1 << PAGE_BITS) - 1);
+            invalidate(page, page + (1 << PAGE_BITS));
+        }
+    }
+
+    // Drops the blocks having bytes between start (included) and end
+    // (excluded), whose starts have to become hot again to be cached anew
+    private void invalidate(int start, int end) {
+        boolean any = false;
+        for (int p = start >>> PAGE_BITS; p < end >>> PAGE_BITS; ++p) {
+            any |= codePages[p];
+            codePages[p] = false;
+        }
+        if (!any)
+            return;
+        int kept = 0;
+        for (int i = 0; i < size; ++i) {
+            Block b = blocks[starts[i]];
+            if (b.end > start && starts[i] < end) {
+                b.valid = false;
+                blocks[starts[i]] = null;
+                hits[starts[i]] = 0;
+            } else
+                starts[kept++] = starts[i];
+        }
+        size = kept;
+    }
+}
@@ -1,16 +1,19 @@
 package ch.epfl.gameboj.component.cpu;
 
+import java.util.Arrays;
+import java.util.Objects;
+
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.Register;
-import ch.epfl.gameboj.RegisterFile;
 import ch.epfl.gameboj.bits.Bit;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.cpu.Alu.Flag;
 import ch.epfl.gameboj.component.cpu.Alu.RotDir;
+import ch.epfl.gameboj.component.lcd.LcdController;
 import ch.epfl.gameboj.component.memory.Ram;
 
 /**
@@ -25,18 +28,48 @@ import ch.epfl.gameboj.component.memory.Ram;
  */
 public final class Cpu implements Component, Clocked {
 
+    /**
+     * Name of the system property which, when set to true, makes the
+     * processors constructed afterwards cache the hot basic blocks of the
+     * programs they execute, decoded once and for all
+     */
+    public static final String BLOCK_CACHE_PROPERTY = "gameboj.cpu.blockCache";
+
+    /**
+     * Name of the system property which, when set to true, makes the
+     * processors constructed afterwards skip the iterations of the loops that
+     * only read memory and come back to the same state, until the next event
+     * of the other components
+     */
+    public static final String IDLE_LOOPS_PROPERTY = "gameboj.cpu.idleLoops";
+
     private final Ram highRam = new Ram(AddressMap.HIGH_RAM_SIZE);
-    private static final Opcode[] DIRECT_OPCODE_TABLE = buildOpcodeTable(
-            Opcode.Kind.DIRECT);
-    private static final Opcode[] PREFIXED_OPCODE_TABLE = buildOpcodeTable(
-            Opcode.Kind.PREFIXED);
-    private long nextNonIdleCycle = 0;
+    private static final int PREFIXED_INDEX = 0x100;
+    private static final Opcode[] OPCODE_TABLE = buildOpcodeTable();
+    private static final Instruction[] INSTRUCTION_TABLE =
+            buildInstructionTable();
+    private long nextNonIdleCycle = 0, currentCycle = -1;
+    private boolean registerWritten = false;
     private boolean ime = false;
     private int SP = 0;
     private int PC = 0, IF = 0, IE = 0;
     private static final int OPCODE_PREFIX = 0xCB;
     private Bus bus;
-    private RegisterFile<Reg> registerFile = new RegisterFile<>(Reg.values());
+    private LcdController lcdController;
+    // The 8 bit registers, indexed by their Reg, so that each pair of 16 bits
+    // is made of two consecutive elements
+    private final int[] regs = new int[Reg.values().length];
+    private final BlockCache blockCache = Boolean
+            .getBoolean(BLOCK_CACHE_PROPERTY) ? new BlockCache() : null;
+    private final boolean idleLoops = Boolean.getBoolean(IDLE_LOOPS_PROPERTY);
+    private final int[] loopRegs = new int[Reg.values().length];
+    private int loopStart = -1, loopSP;
+    private long loopCycle;
+    private boolean loopIme, loopWritten, loopVolatile;
+    // The cycle from which the LCD registers read by the current iteration of
+    // the loop may have changed
+    private long loopHorizon = Long.MAX_VALUE;
+    private long skippedCycles = 0;
 
     /**
      * Enumeration of {@link Register} of 8 bits
@@ -87,6 +120,232 @@ public final class Cpu implements Component, Clocked {
         return;
     }
 
+    /**
+     * Executes the instructions of the processor back to back, from the given
+     * cycle until the given deadline (excluded), assuming that no other
+     * component changes its state in the meantime. The execution stops early
+     * after an instruction that wrote to an input/output register, as the
+     * write can change the state or the deadlines of the other components,
+     * which must then be simulated first
+     * 
+     * @param cycle
+     *            long value, the index of the first cycle to simulate
+     * @param deadline
+     *            long value, the index of the cycle until which the processor
+     *            can run alone
+     * @return long value, the index of the first cycle that has not been
+     *         simulated, which is the deadline unless the execution stopped
+     *         early
+     */
+    public long runUntil(long cycle, long deadline) {
+        registerWritten = false;
+        // The other components may have changed the memory since the last
+        // loop iteration
+        loopStart = -1;
+        while (true) {
+            if (nextNonIdleCycle == Long.MAX_VALUE) {
+                if (!testIE_IF())
+                    return deadline;
+                nextNonIdleCycle = cycle;
+            }
+            if (nextNonIdleCycle >= deadline)
+                return deadline;
+            BlockCache.Block block = null;
+            if (blockCache != null && !(ime && testIE_IF())) {
+                block = blockCache.get(PC);
+                if (block == null && blockCache.hit(PC))
+                    block = cacheBlock(PC);
+            }
+            int pc = PC;
+            if (block != null)
+                executeBlock(block, deadline);
+            else
+                reallyCycle();
+            if (idleLoops && PC <= pc)
+                skipIdleLoop(deadline);
+            cycle = currentCycle + 1;
+            if (registerWritten)
+                return cycle;
+        }
+    }
+
+    /**
+     * Returns the number of cycles that the processor skipped, in idle loops
+     * 
+     * @return long value, the number of cycles during which the processor
+     *         was not simulated as it would have run an idle loop
+     * @see #IDLE_LOOPS_PROPERTY
+     */
+    public long skippedCycles() {
+        return skippedCycles;
+    }
+
+    /**
+     * Returns the cache of the basic blocks of the processor
+     * 
+     * @return the {@link BlockCache}, or null if the processor does not cache
+     *         its blocks
+     * @see #BLOCK_CACHE_PROPERTY
+     */
+    BlockCache blockCache() {
+        return blockCache;
+    }
+
+    /**
+     * Gives the processor the LCD controller whose registers LY and STAT it
+     * reads, so that the idle loops reading them can be skipped until these
+     * registers change, instead of not being skipped at all
+     * 
+     * @param lcdController
+     *            the {@link LcdController} attached to the bus of the
+     *            processor
+     * @throws NullPointerException
+     *             if the controller is null
+     */
+    public void setLcdController(LcdController lcdController) {
+        this.lcdController = Objects.requireNonNull(lcdController);
+    }
+
+    /**
+     * Called after each jump back, to the start of a loop. If the processor
+     * came back to the same address as after the previous jump back, in the
+     * same state, without writing to memory or reading the timer, whose
+     * registers change on their own, the loop iterates the same way until
+     * another component changes the memory it reads, i.e. until the deadline,
+     * or until LY or STAT change if the loop reads them. All the iterations
+     * that end before then are skipped
+     * 
+     * @param deadline
+     *            long value, the index of the cycle until which the processor
+     *            can run alone
+     */
+    private void skipIdleLoop(long deadline) {
+        long end = Math.min(deadline, loopHorizon);
+        if (PC == loopStart && !loopWritten && !loopVolatile && SP == loopSP
+                && ime == loopIme && Arrays.equals(regs, loopRegs)
+                && nextNonIdleCycle < end) {
+            long length = nextNonIdleCycle - loopCycle;
+            long skipped = (end - nextNonIdleCycle) / length * length;
+            currentCycle += skipped;
+            nextNonIdleCycle += skipped;
+            skippedCycles += skipped;
+        }
+        loopStart = PC;
+        loopSP = SP;
+        loopCycle = nextNonIdleCycle;
+        loopIme = ime;
+        loopWritten = false;
+        loopVolatile = false;
+        loopHorizon = Long.MAX_VALUE;
+        System.arraycopy(regs, 0, loopRegs, 0, regs.length);
+    }
+
+    /**
+     * Decodes the basic block starting at the given address, i.e. the
+     * instructions following it up to the first jump, and adds it to the
+     * cache of blocks
+     * 
+     * @param start
+     *            integer value of 16 bits, the address of the block
+     * @return the block, or null if it is too short to be worth caching
+     */
+    private BlockCache.Block cacheBlock(int start) {
+        int[] addresses = new int[BlockCache.MAX_INSTRUCTIONS];
+        int[] instructions = new int[BlockCache.MAX_INSTRUCTIONS];
+        int n = 0, address = start;
+        while (n < BlockCache.MAX_INSTRUCTIONS
+                && BlockCache.isCacheable(address)) {
+            int index = read8(address);
+            if (index == OPCODE_PREFIX)
+                index = PREFIXED_INDEX + read8(address + 1);
+            Opcode opcode = OPCODE_TABLE[index];
+            if (opcode == null || !BlockCache
+                    .isCacheable(address + opcode.totalBytes - 1))
+                break;
+            addresses[n] = address;
+            instructions[n++] = index;
+            address += opcode.totalBytes;
+            if (endsBlock(opcode.family))
+                break;
+        }
+        if (n < BlockCache.MIN_INSTRUCTIONS) {
+            blockCache.reject(start);
+            return null;
+        }
+        BlockCache.Block block = new BlockCache.Block(
+                Arrays.copyOf(addresses, n), Arrays.copyOf(instructions, n),
+                address);
+        blockCache.put(block);
+        return block;
+    }
+
+    /**
+     * Executes the instructions of the given block as long as the program
+     * counter follows them, leaving it before the deadline, a pending
+     * interrupt, a write to an input/output register or a write to the block
+     * itself, in which cases the execution goes on instruction by instruction
+     * 
+     * @param block
+     *            the block to execute, starting at the program counter
+     * @param deadline
+     *            long value, the index of the cycle until which the processor
+     *            can run alone
+     */
+    private void executeBlock(BlockCache.Block block, long deadline) {
+        int[] addresses = block.addresses, instructions = block.instructions;
+        currentCycle = nextNonIdleCycle;
+        execute(instructions[0]);
+        for (int i = 1; i < instructions.length; ++i) {
+            if (PC != addresses[i] || nextNonIdleCycle >= deadline
+                    || registerWritten || !block.valid
+                    || (ime && testIE_IF()))
+                return;
+            currentCycle = nextNonIdleCycle;
+            execute(instructions[i]);
+        }
+    }
+
+    /**
+     * @param family
+     *            a {@link Opcode.Family}
+     * @return true if the instructions of the given family can jump, and thus
+     *         end a basic block
+     */
+    private static boolean endsBlock(Opcode.Family family) {
+        switch (family) {
+        case JP_HL: case JP_N16: case JP_CC_N16: case JR_E8: case JR_CC_E8:
+        case CALL_N16: case CALL_CC_N16: case RST_U3: case RET: case RET_CC:
+        case RETI: case HALT: case STOP:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Returns the index of the cycle during which the processor executed its
+     * last instruction, or is executing its current one, so that the
+     * components it accesses can catch up with it
+     * 
+     * @return long value, the index of the cycle of the last instruction of
+     *         the processor, -1 if it did not execute any
+     */
+    public long currentCycle() {
+        return currentCycle;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Clocked#nextNonIdleCycle(long)
+     */
+    @Override
+    public long nextNonIdleCycle(long cycle) {
+        if (nextNonIdleCycle == Long.MAX_VALUE)
+            return testIE_IF() ? cycle : Long.MAX_VALUE;
+        return nextNonIdleCycle;
+    }
+
     /**
      * Checks whether {@link Interrupt} are enabled (i.e if IME is true) and if
      * an interruption is pending, it handles it accordingly, otherwise it asks
@@ -94,6 +353,7 @@ public final class Cpu implements Component, Clocked {
      */
 
     public void reallyCycle() {
+        currentCycle = nextNonIdleCycle;
 
         if (ime && testIE_IF())
 
@@ -105,587 +365,760 @@ public final class Cpu implements Component, Clocked {
             PC = AddressMap.INTERRUPTS[i];
             nextNonIdleCycle += 5;
 
-        } else if (read8(PC) == OPCODE_PREFIX) {
-            dispatch(PREFIXED_OPCODE_TABLE[read8AfterOpcode()]);
-
-        } else
-            dispatch(DIRECT_OPCODE_TABLE[read8(PC)]);
+        } else {
+            int index = read8(PC);
+            if (index == OPCODE_PREFIX)
+                index = PREFIXED_INDEX + read8AfterOpcode();
+            execute(index);
+        }
     }
 
-    private void writeRegF(int num) {
-        registerFile.set(Reg.F, num);
+    /**
+     * Instruction of the processor whose operands have been decoded once and
+     * for all from its {@link Opcode}
+     */
+    @FunctionalInterface
+    private interface Instruction {
+        /**
+         * Executes the instruction on the given processor
+         * 
+         * @param cpu
+         *            the processor executing the instruction
+         * @param nextPc
+         *            integer value, the address of the following instruction
+         * @return integer value, the new value of the program counter
+         */
+        int execute(Cpu cpu, int nextPc);
     }
 
     /**
-     * Given a byte containing an opcode, execute the corresponding instruction,
-     * reading or writing, if necessary, values from the bus or registers.
+     * Executes the instruction of the given index in the instruction table,
+     * i.e. its encoding, plus 256 if it is prefixed, reading or writing, if
+     * necessary, values from the bus or registers
      * 
-     * @param opcode
-     *            an {@link Opcode}, is the first byte of the instruction, that
-     *            tells the processor what operations need to be performed.
+     * @param index
+     *            integer value, the index of the instruction
      */
+    private void execute(int index) {
+        Opcode opcode = OPCODE_TABLE[index];
+        PC = INSTRUCTION_TABLE[index].execute(this, PC + opcode.totalBytes);
+        nextNonIdleCycle += opcode.cycles;
+    }
 
-    private void dispatch(Opcode opcode) {
+    /**
+     * Constructs the table of the instructions of the processor, indexed by
+     * their encoding, plus 256 for the prefixed ones
+     * 
+     * @return an Instruction array of size 512, whose elements are null for
+     *         the encodings that do not correspond to any {@link Opcode}
+     */
+    private static Instruction[] buildInstructionTable() {
+        Instruction[] instructions = new Instruction[OPCODE_TABLE.length];
+        for (int i = 0; i < OPCODE_TABLE.length; ++i)
+            if (OPCODE_TABLE[i] != null)
+                instructions[i] = instruction(OPCODE_TABLE[i]);
+        return instructions;
+    }
 
-        int nextPc = PC + opcode.totalBytes;
+    /**
+     * Decodes the operands of the given opcode and returns the instruction
+     * executing it with these operands
+     * 
+     * @param opcode
+     *            an {@link Opcode}
+     * @return the {@link Instruction} executing the given opcode
+     */
+    private static Instruction instruction(Opcode opcode) {
         switch (opcode.family) {
         // load
-        case NOP: {
-        }
-            break;
+        case NOP:
+            return (c, pc) -> pc;
 
         case LD_R8_HLR: {
             Reg r = extractReg(opcode, 3);
-            registerFile.set(r, read8AtHl());
+            return (c, pc) -> {
+                c.setReg(r, c.read8AtHl());
+                return pc;
+            };
         }
-            break;
 
         case LD_A_HLRU: {
-            registerFile.set(Reg.A, read8AtHl());
-            setReg16(Reg16.HL, Bits.clip(16,
-                    reg16(Reg16.HL) + extractHlIncrement(opcode)));
-        }
-            break;
-
-        case LD_A_N8R: {
-            registerFile.set(Reg.A,
-                    read8(AddressMap.REGS_START + read8AfterOpcode()));
-        }
-            break;
-
-        case LD_A_CR: {
-            registerFile.set(Reg.A,
-                    read8(AddressMap.REGS_START + registerFile.get(Reg.C)));
-        }
-            break;
-
-        case LD_A_N16R: {
-            registerFile.set(Reg.A, read8(read16AfterOpcode()));
-        }
-            break;
-
-        case LD_A_BCR: {
-            registerFile.set(Reg.A, read8(reg16(Reg16.BC)));
-        }
-            break;
-
-        case LD_A_DER: {
-            registerFile.set(Reg.A, read8(reg16(Reg16.DE)));
-        }
-            break;
+            int increment = extractHlIncrement(opcode);
+            return (c, pc) -> {
+                c.setReg(Reg.A, c.read8AtHl());
+                c.addToHl(increment);
+                return pc;
+            };
+        }
+
+        case LD_A_N8R:
+            return (c, pc) -> {
+                c.setReg(Reg.A,
+                        c.read8(AddressMap.REGS_START + c.read8AfterOpcode()));
+                return pc;
+            };
+
+        case LD_A_CR:
+            return (c, pc) -> {
+                c.setReg(Reg.A, c.read8(
+                        AddressMap.REGS_START + c.reg(Reg.C)));
+                return pc;
+            };
+
+        case LD_A_N16R:
+            return (c, pc) -> {
+                c.setReg(Reg.A, c.read8(c.read16AfterOpcode()));
+                return pc;
+            };
+
+        case LD_A_BCR:
+            return (c, pc) -> {
+                c.setReg(Reg.A, c.read8(c.reg16(Reg16.BC)));
+                return pc;
+            };
+
+        case LD_A_DER:
+            return (c, pc) -> {
+                c.setReg(Reg.A, c.read8(c.reg16(Reg16.DE)));
+                return pc;
+            };
 
         case LD_R8_N8: {
             Reg r = extractReg(opcode, 3);
-            registerFile.set(r, read8AfterOpcode());
+            return (c, pc) -> {
+                c.setReg(r, c.read8AfterOpcode());
+                return pc;
+            };
         }
-            break;
 
         case LD_R16SP_N16: {
             Reg16 r = extractReg16(opcode);
-            setReg16SP(r, read16AfterOpcode());
+            return (c, pc) -> {
+                c.setReg16SP(r, c.read16AfterOpcode());
+                return pc;
+            };
         }
-            break;
 
         case POP_R16: {
             Reg16 r = extractReg16(opcode);
-            setReg16(r, pop16());
+            return (c, pc) -> {
+                c.setReg16(r, c.pop16());
+                return pc;
+            };
         }
-            break;
 
         // store
         case LD_HLR_R8: {
             Reg r = extractReg(opcode, 0);
-            write8AtHl(registerFile.get(r));
+            return (c, pc) -> {
+                c.write8AtHl(c.reg(r));
+                return pc;
+            };
         }
-            break;
 
         case LD_HLRU_A: {
-            write8AtHl(registerFile.get(Reg.A));
-            setReg16(Reg16.HL, Bits.clip(16,
-                    reg16(Reg16.HL) + extractHlIncrement(opcode)));
-        }
-            break;
-
-        case LD_N8R_A: {
-            write8(AddressMap.REGS_START + read8AfterOpcode(),
-                    registerFile.get(Reg.A));
-        }
-            break;
-
-        case LD_CR_A: {
-            write8(AddressMap.REGS_START + registerFile.get(Reg.C),
-                    registerFile.get(Reg.A));
-        }
-            break;
-
-        case LD_N16R_A: {
-            write8(read16AfterOpcode(), registerFile.get(Reg.A));
-        }
-            break;
-
-        case LD_BCR_A: {
-            write8(reg16(Reg16.BC), registerFile.get(Reg.A));
-        }
-            break;
-
-        case LD_DER_A: {
-            write8(reg16(Reg16.DE), registerFile.get(Reg.A));
-        }
-            break;
-
-        case LD_HLR_N8: {
-            write8AtHl(read8AfterOpcode());
-        }
-            break;
-
-        case LD_N16R_SP: {
-            write16(read16AfterOpcode(), SP);
-        }
-            break;
+            int increment = extractHlIncrement(opcode);
+            return (c, pc) -> {
+                c.write8AtHl(c.reg(Reg.A));
+                c.addToHl(increment);
+                return pc;
+            };
+        }
+
+        case LD_N8R_A:
+            return (c, pc) -> {
+                c.write8(AddressMap.REGS_START + c.read8AfterOpcode(),
+                        c.reg(Reg.A));
+                return pc;
+            };
+
+        case LD_CR_A:
+            return (c, pc) -> {
+                c.write8(AddressMap.REGS_START + c.reg(Reg.C),
+                        c.reg(Reg.A));
+                return pc;
+            };
+
+        case LD_N16R_A:
+            return (c, pc) -> {
+                c.write8(c.read16AfterOpcode(), c.reg(Reg.A));
+                return pc;
+            };
+
+        case LD_BCR_A:
+            return (c, pc) -> {
+                c.write8(c.reg16(Reg16.BC), c.reg(Reg.A));
+                return pc;
+            };
+
+        case LD_DER_A:
+            return (c, pc) -> {
+                c.write8(c.reg16(Reg16.DE), c.reg(Reg.A));
+                return pc;
+            };
+
+        case LD_HLR_N8:
+            return (c, pc) -> {
+                c.write8AtHl(c.read8AfterOpcode());
+                return pc;
+            };
+
+        case LD_N16R_SP:
+            return (c, pc) -> {
+                c.write16(c.read16AfterOpcode(), c.SP);
+                return pc;
+            };
 
         case PUSH_R16: {
             Reg16 r = extractReg16(opcode);
-            push16(reg16(r));
+            return (c, pc) -> {
+                c.push16(c.reg16(r));
+                return pc;
+            };
         }
-            break;
 
         // move
         case LD_R8_R8: {
             Reg r = extractReg(opcode, 3);
             Reg s = extractReg(opcode, 0);
-            if (!r.equals(s))
-                registerFile.set(r, registerFile.get(s));
-        }
-            break;
-        case LD_SP_HL: {
-            SP = reg16(Reg16.HL);
+            if (r == s)
+                return (c, pc) -> pc;
+            return (c, pc) -> {
+                c.setReg(r, c.reg(s));
+                return pc;
+            };
         }
-            break;
+
+        case LD_SP_HL:
+            return (c, pc) -> {
+                c.SP = c.reg16(Reg16.HL);
+                return pc;
+            };
 
         // Add
         case ADD_A_R8: {
             Reg r = extractReg(opcode, 0);
-            setRegFlags(Reg.A, Alu.add(registerFile.get(Reg.A),
-                    registerFile.get(r), getCarryADD(opcode)));
+            boolean withCarry = Bits.test(opcode.encoding, 3);
+            return (c, pc) -> {
+                c.setRegFlags(Reg.A, Alu.add(c.reg(Reg.A),
+                        c.reg(r), withCarry && c.carry()));
+                return pc;
+            };
         }
-            break;
 
         case ADD_A_N8: {
-            setRegFlags(Reg.A, Alu.add(registerFile.get(Reg.A),
-                    read8AfterOpcode(), getCarryADD(opcode)));
+            boolean withCarry = Bits.test(opcode.encoding, 3);
+            return (c, pc) -> {
+                c.setRegFlags(Reg.A, Alu.add(c.reg(Reg.A),
+                        c.read8AfterOpcode(), withCarry && c.carry()));
+                return pc;
+            };
         }
-            break;
 
         case ADD_A_HLR: {
-            setRegFlags(Reg.A, Alu.add(registerFile.get(Reg.A), read8AtHl(),
-                    getCarryADD(opcode)));
+            boolean withCarry = Bits.test(opcode.encoding, 3);
+            return (c, pc) -> {
+                c.setRegFlags(Reg.A, Alu.add(c.reg(Reg.A),
+                        c.read8AtHl(), withCarry && c.carry()));
+                return pc;
+            };
         }
-            break;
 
         case INC_R8: {
             Reg r = extractReg(opcode, 3);
-            int vf = Alu.add(registerFile.get(r), 1);
-            registerFile.set(r, Alu.unpackValue(vf));
-            combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU,
-                    FlagSrc.CPU);
+            return (c, pc) -> {
+                int vf = Alu.add(c.reg(r), 1);
+                c.setRegFromAlu(r, vf);
+                c.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU,
+                        FlagSrc.CPU);
+                return pc;
+            };
         }
-            break;
 
-        case INC_HLR: {
-            int vf = Alu.add(read8AtHl(), 1);
-            write8AtHl(Alu.unpackValue(vf));
-            combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU,
-                    FlagSrc.CPU);
-        }
-            break;
+        case INC_HLR:
+            return (c, pc) -> {
+                int vf = Alu.add(c.read8AtHl(), 1);
+                c.write8AtHl(Alu.unpackValue(vf));
+                c.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU,
+                        FlagSrc.CPU);
+                return pc;
+            };
 
         case INC_R16SP: {
             Reg16 r = extractReg16(opcode);
-            int vf = Alu.add16H(reg16SP(r), 1);
-            setReg16SP(r, Alu.unpackValue(vf));
+            return (c, pc) -> {
+                c.setReg16SP(r, Alu.unpackValue(Alu.add16H(c.reg16SP(r), 1)));
+                return pc;
+            };
         }
-            break;
 
         case ADD_HL_R16SP: {
             Reg16 r = extractReg16(opcode);
-            int vf = Alu.add16H(reg16(Reg16.HL), reg16SP(r));
-            setReg16(Reg16.HL, Alu.unpackValue(vf));
-            combineAluFlags(vf, FlagSrc.CPU, FlagSrc.V0, FlagSrc.ALU,
-                    FlagSrc.ALU);
+            return (c, pc) -> {
+                int vf = Alu.add16H(c.reg16(Reg16.HL), c.reg16SP(r));
+                c.setReg16(Reg16.HL, Alu.unpackValue(vf));
+                c.combineAluFlags(vf, FlagSrc.CPU, FlagSrc.V0, FlagSrc.ALU,
+                        FlagSrc.ALU);
+                return pc;
+            };
         }
-            break;
 
         case LD_HLSP_S8: {
-            int e = Bits.clip(16, Bits.signExtend8(read8AfterOpcode()));
-            int vf = Alu.add16L(SP, e);
-            combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU,
-                    FlagSrc.ALU);
-            if (Bits.test(opcode.encoding, 4)) {
-                setReg16(Reg16.HL, Alu.unpackValue(vf));
-            } else
-                SP = Alu.unpackValue(vf);
+            boolean toHl = Bits.test(opcode.encoding, 4);
+            return (c, pc) -> {
+                int e = Bits.clip(16, Bits.signExtend8(c.read8AfterOpcode()));
+                int vf = Alu.add16L(c.SP, e);
+                c.combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU,
+                        FlagSrc.ALU);
+                if (toHl)
+                    c.setReg16(Reg16.HL, Alu.unpackValue(vf));
+                else
+                    c.SP = Alu.unpackValue(vf);
+                return pc;
+            };
         }
-            break;
 
         // Subtract
         case SUB_A_R8: {
             Reg r = extractReg(opcode, 0);
-            int vf = Alu.sub(registerFile.get(Reg.A), registerFile.get(r),
-                    getCarryADD(opcode));
-            setRegFlags(Reg.A, vf);
+            boolean withCarry = Bits.test(opcode.encoding, 3);
+            return (c, pc) -> {
+                c.setRegFlags(Reg.A, Alu.sub(c.reg(Reg.A),
+                        c.reg(r), withCarry && c.carry()));
+                return pc;
+            };
         }
-            break;
 
         case SUB_A_N8: {
-            int vf = Alu.sub(registerFile.get(Reg.A), read8AfterOpcode(),
-                    getCarryADD(opcode));
-            setRegFlags(Reg.A, vf);
+            boolean withCarry = Bits.test(opcode.encoding, 3);
+            return (c, pc) -> {
+                c.setRegFlags(Reg.A, Alu.sub(c.reg(Reg.A),
+                        c.read8AfterOpcode(), withCarry && c.carry()));
+                return pc;
+            };
         }
-            break;
 
         case SUB_A_HLR: {
-            setRegFlags(Reg.A, Alu.sub(registerFile.get(Reg.A), read8AtHl(),
-                    getCarryADD(opcode)));
+            boolean withCarry = Bits.test(opcode.encoding, 3);
+            return (c, pc) -> {
+                c.setRegFlags(Reg.A, Alu.sub(c.reg(Reg.A),
+                        c.read8AtHl(), withCarry && c.carry()));
+                return pc;
+            };
         }
-            break;
 
         case DEC_R8: {
             Reg r = extractReg(opcode, 3);
-            int vf = Alu.sub(registerFile.get(r), 1);
-            setRegFromAlu(r, vf);
-            combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU,
-                    FlagSrc.CPU);
+            return (c, pc) -> {
+                int vf = Alu.sub(c.reg(r), 1);
+                c.setRegFromAlu(r, vf);
+                c.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU,
+                        FlagSrc.CPU);
+                return pc;
+            };
         }
-            break;
 
-        case DEC_HLR: {
-            int vf = Alu.sub(read8AtHl(), 1);
-            write8AtHl(Alu.unpackValue(vf));
-            combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU,
-                    FlagSrc.CPU);
-        }
-            break;
+        case DEC_HLR:
+            return (c, pc) -> {
+                int vf = Alu.sub(c.read8AtHl(), 1);
+                c.write8AtHl(Alu.unpackValue(vf));
+                c.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU,
+                        FlagSrc.CPU);
+                return pc;
+            };
 
         case CP_A_R8: {
             Reg r = extractReg(opcode, 0);
-            setFlags(Alu.sub(registerFile.get(Reg.A), registerFile.get(r)));
-        }
-            break;
-
-        case CP_A_N8: {
-            setFlags(Alu.sub(registerFile.get(Reg.A), read8AfterOpcode()));
-        }
-            break;
-
-        case CP_A_HLR: {
-            setFlags(Alu.sub(registerFile.get(Reg.A), read8AtHl()));
-        }
-            break;
+            return (c, pc) -> {
+                c.setFlags(Alu.sub(c.reg(Reg.A),
+                        c.reg(r)));
+                return pc;
+            };
+        }
+
+        case CP_A_N8:
+            return (c, pc) -> {
+                c.setFlags(Alu.sub(c.reg(Reg.A),
+                        c.read8AfterOpcode()));
+                return pc;
+            };
+
+        case CP_A_HLR:
+            return (c, pc) -> {
+                c.setFlags(Alu.sub(c.reg(Reg.A), c.read8AtHl()));
+                return pc;
+            };
 
         case DEC_R16SP: {
             Reg16 r = extractReg16(opcode);
-            setReg16SP(r, Bits.clip(16, reg16SP(r) - 1));
+            return (c, pc) -> {
+                c.setReg16SP(r, Bits.clip(16, c.reg16SP(r) - 1));
+                return pc;
+            };
         }
-            break;
 
         // And, or, xor, complement
-        case AND_A_N8: {
-            setRegFlags(Reg.A,
-                    Alu.and(registerFile.get(Reg.A), read8AfterOpcode()));
-        }
-            break;
+        case AND_A_N8:
+            return (c, pc) -> {
+                c.setRegFlags(Reg.A, Alu.and(c.reg(Reg.A),
+                        c.read8AfterOpcode()));
+                return pc;
+            };
 
         case AND_A_R8: {
             Reg r = extractReg(opcode, 0);
-            setRegFlags(Reg.A,
-                    Alu.and(registerFile.get(Reg.A), registerFile.get(r)));
+            return (c, pc) -> {
+                c.setRegFlags(Reg.A, Alu.and(c.reg(Reg.A),
+                        c.reg(r)));
+                return pc;
+            };
         }
-            break;
 
-        case AND_A_HLR: {
-            setRegFlags(Reg.A, Alu.and(registerFile.get(Reg.A), read8AtHl()));
-        }
-            break;
+        case AND_A_HLR:
+            return (c, pc) -> {
+                c.setRegFlags(Reg.A,
+                        Alu.and(c.reg(Reg.A), c.read8AtHl()));
+                return pc;
+            };
 
         case OR_A_R8: {
             Reg r = extractReg(opcode, 0);
-            setRegFlags(Reg.A,
-                    Alu.or(registerFile.get(Reg.A), registerFile.get(r)));
-        }
-            break;
-
-        case OR_A_N8: {
-            setRegFlags(Reg.A,
-                    Alu.or(registerFile.get(Reg.A), read8AfterOpcode()));
-        }
-            break;
-
-        case OR_A_HLR: {
-            setRegFlags(Reg.A, Alu.or(registerFile.get(Reg.A), read8AtHl()));
-        }
-            break;
+            return (c, pc) -> {
+                c.setRegFlags(Reg.A, Alu.or(c.reg(Reg.A),
+                        c.reg(r)));
+                return pc;
+            };
+        }
+
+        case OR_A_N8:
+            return (c, pc) -> {
+                c.setRegFlags(Reg.A, Alu.or(c.reg(Reg.A),
+                        c.read8AfterOpcode()));
+                return pc;
+            };
+
+        case OR_A_HLR:
+            return (c, pc) -> {
+                c.setRegFlags(Reg.A,
+                        Alu.or(c.reg(Reg.A), c.read8AtHl()));
+                return pc;
+            };
 
         case XOR_A_R8: {
             Reg r = extractReg(opcode, 0);
-            setRegFlags(Reg.A,
-                    Alu.xor(registerFile.get(Reg.A), registerFile.get(r)));
-        }
-            break;
-
-        case XOR_A_N8: {
-            setRegFlags(Reg.A,
-                    Alu.xor(registerFile.get(Reg.A), read8AfterOpcode()));
-        }
-            break;
-
-        case XOR_A_HLR: {
-            setRegFlags(Reg.A, Alu.xor(registerFile.get(Reg.A), read8AtHl()));
-        }
-            break;
-
-        case CPL: {
-            registerFile.set(Reg.A, Bits.complement8(registerFile.get(Reg.A)));
-            combineAluFlags(0, FlagSrc.CPU, FlagSrc.V1, FlagSrc.V1,
-                    FlagSrc.CPU);
-        }
-            break;
+            return (c, pc) -> {
+                c.setRegFlags(Reg.A, Alu.xor(c.reg(Reg.A),
+                        c.reg(r)));
+                return pc;
+            };
+        }
+
+        case XOR_A_N8:
+            return (c, pc) -> {
+                c.setRegFlags(Reg.A, Alu.xor(c.reg(Reg.A),
+                        c.read8AfterOpcode()));
+                return pc;
+            };
+
+        case XOR_A_HLR:
+            return (c, pc) -> {
+                c.setRegFlags(Reg.A,
+                        Alu.xor(c.reg(Reg.A), c.read8AtHl()));
+                return pc;
+            };
+
+        case CPL:
+            return (c, pc) -> {
+                c.setReg(Reg.A,
+                        Bits.complement8(c.reg(Reg.A)));
+                c.combineAluFlags(0, FlagSrc.CPU, FlagSrc.V1, FlagSrc.V1,
+                        FlagSrc.CPU);
+                return pc;
+            };
 
         // Rotate, shift
         case ROTCA: {
-            int vf = Alu.rotate(rotDir(opcode), registerFile.get(Reg.A));
-            setRegFromAlu(Reg.A, vf);
-            combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0,
-                    FlagSrc.ALU);
+            RotDir d = rotDir(opcode);
+            return (c, pc) -> {
+                int vf = Alu.rotate(d, c.reg(Reg.A));
+                c.setRegFromAlu(Reg.A, vf);
+                c.combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0,
+                        FlagSrc.ALU);
+                return pc;
+            };
         }
-            break;
 
         case ROTA: {
-            int vf = Alu.rotate(rotDir(opcode), registerFile.get(Reg.A),
-                    Bits.test(registerFile.get(Reg.F), 4));
-            setRegFromAlu(Reg.A, vf);
-            combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0,
-                    FlagSrc.ALU);
+            RotDir d = rotDir(opcode);
+            return (c, pc) -> {
+                int vf = Alu.rotate(d, c.reg(Reg.A), c.carry());
+                c.setRegFromAlu(Reg.A, vf);
+                c.combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0,
+                        FlagSrc.ALU);
+                return pc;
+            };
         }
-            break;
 
         case ROTC_R8: {
             Reg r = extractReg(opcode, 0);
-            setRegFlags(r, Alu.rotate(rotDir(opcode), registerFile.get(r)));
+            RotDir d = rotDir(opcode);
+            return (c, pc) -> {
+                c.setRegFlags(r, Alu.rotate(d, c.reg(r)));
+                return pc;
+            };
         }
-            break;
 
         case ROT_R8: {
             Reg r = extractReg(opcode, 0);
-            setRegFlags(r, Alu.rotate(rotDir(opcode), registerFile.get(r),
-                    Bits.test(registerFile.get(Reg.F), 4)));
+            RotDir d = rotDir(opcode);
+            return (c, pc) -> {
+                c.setRegFlags(r,
+                        Alu.rotate(d, c.reg(r), c.carry()));
+                return pc;
+            };
         }
-            break;
 
         case ROTC_HLR: {
-            write8AtHlAndSetFlags(Alu.rotate(rotDir(opcode), read8AtHl()));
+            RotDir d = rotDir(opcode);
+            return (c, pc) -> {
+                c.write8AtHlAndSetFlags(Alu.rotate(d, c.read8AtHl()));
+                return pc;
+            };
         }
-            break;
 
         case ROT_HLR: {
-            write8AtHlAndSetFlags(Alu.rotate(rotDir(opcode), read8AtHl(),
-                    Bits.test(registerFile.get(Reg.F), 4)));
+            RotDir d = rotDir(opcode);
+            return (c, pc) -> {
+                c.write8AtHlAndSetFlags(
+                        Alu.rotate(d, c.read8AtHl(), c.carry()));
+                return pc;
+            };
         }
-            break;
 
         case SWAP_R8: {
             Reg r = extractReg(opcode, 0);
-            setRegFlags(r, Alu.swap(registerFile.get(r)));
+            return (c, pc) -> {
+                c.setRegFlags(r, Alu.swap(c.reg(r)));
+                return pc;
+            };
         }
-            break;
 
-        case SWAP_HLR: {
-            write8AtHlAndSetFlags(Alu.swap(read8AtHl()));
-        }
-            break;
+        case SWAP_HLR:
+            return (c, pc) -> {
+                c.write8AtHlAndSetFlags(Alu.swap(c.read8AtHl()));
+                return pc;
+            };
 
         case SLA_R8: {
             Reg r = extractReg(opcode, 0);
-            setRegFlags(r, Alu.shiftLeft(registerFile.get(r)));
+            return (c, pc) -> {
+                c.setRegFlags(r, Alu.shiftLeft(c.reg(r)));
+                return pc;
+            };
         }
-            break;
 
         case SRA_R8: {
             Reg r = extractReg(opcode, 0);
-            setRegFlags(r, Alu.shiftRightA(registerFile.get(r)));
+            return (c, pc) -> {
+                c.setRegFlags(r, Alu.shiftRightA(c.reg(r)));
+                return pc;
+            };
         }
-            break;
 
         case SRL_R8: {
             Reg r = extractReg(opcode, 0);
-            setRegFlags(r, Alu.shiftRightL(registerFile.get(r)));
-        }
-            break;
-
-        case SLA_HLR: {
-            write8AtHlAndSetFlags(Alu.shiftLeft(read8AtHl()));
-        }
-            break;
-
-        case SRA_HLR: {
-            write8AtHlAndSetFlags(Alu.shiftRightA(read8AtHl()));
-        }
-            break;
-
-        case SRL_HLR: {
-            write8AtHlAndSetFlags(Alu.shiftRightL(read8AtHl()));
-        }
-            break;
+            return (c, pc) -> {
+                c.setRegFlags(r, Alu.shiftRightL(c.reg(r)));
+                return pc;
+            };
+        }
+
+        case SLA_HLR:
+            return (c, pc) -> {
+                c.write8AtHlAndSetFlags(Alu.shiftLeft(c.read8AtHl()));
+                return pc;
+            };
+
+        case SRA_HLR:
+            return (c, pc) -> {
+                c.write8AtHlAndSetFlags(Alu.shiftRightA(c.read8AtHl()));
+                return pc;
+            };
+
+        case SRL_HLR:
+            return (c, pc) -> {
+                c.write8AtHlAndSetFlags(Alu.shiftRightL(c.read8AtHl()));
+                return pc;
+            };
 
         // Bit test and set
         case BIT_U3_R8: {
             Reg r = extractReg(opcode, 0);
-            if (Bits.test(registerFile.get(r), extractN3(opcode))) {
-                combineAluFlags(0, FlagSrc.V0, FlagSrc.V0, FlagSrc.V1,
-                        FlagSrc.CPU);
-            } else
-                combineAluFlags(0, FlagSrc.V1, FlagSrc.V0, FlagSrc.V1,
-                        FlagSrc.CPU);
+            int n = extractN3(opcode);
+            return (c, pc) -> {
+                c.combineAluFlags(0,
+                        Bits.test(c.reg(r), n) ? FlagSrc.V0
+                                : FlagSrc.V1,
+                        FlagSrc.V0, FlagSrc.V1, FlagSrc.CPU);
+                return pc;
+            };
         }
-            break;
 
         case BIT_U3_HLR: {
-            if (Bits.test(read8AtHl(), extractN3(opcode)))
-                combineAluFlags(0, FlagSrc.V0, FlagSrc.V0, FlagSrc.V1,
-                        FlagSrc.CPU);
-            else
-                combineAluFlags(0, FlagSrc.V1, FlagSrc.V0, FlagSrc.V1,
-                        FlagSrc.CPU);
+            int n = extractN3(opcode);
+            return (c, pc) -> {
+                c.combineAluFlags(0,
+                        Bits.test(c.read8AtHl(), n) ? FlagSrc.V0 : FlagSrc.V1,
+                        FlagSrc.V0, FlagSrc.V1, FlagSrc.CPU);
+                return pc;
+            };
         }
-            break;
 
         case CHG_U3_R8: {
             Reg r = extractReg(opcode, 0);
-            registerFile.set(r, Bits.set(registerFile.get(r), extractN3(opcode),
-                    test6_Opcode(opcode)));
+            int n = extractN3(opcode);
+            boolean v = test6_Opcode(opcode);
+            return (c, pc) -> {
+                c.setReg(r, Bits.set(c.reg(r), n, v));
+                return pc;
+            };
         }
-            break;
 
         case CHG_U3_HLR: {
-            write8AtHl(Bits.set(read8AtHl(), extractN3(opcode),
-                    test6_Opcode(opcode)));
+            int n = extractN3(opcode);
+            boolean v = test6_Opcode(opcode);
+            return (c, pc) -> {
+                c.write8AtHl(Bits.set(c.read8AtHl(), n, v));
+                return pc;
+            };
         }
-            break;
 
         // Misc. ALU
-        case DAA: {
-            int vf = Alu.bcdAdjust(registerFile.get(Reg.A),
-                    Bits.test(registerFile.get(Reg.F), 6),
-                    Bits.test(registerFile.get(Reg.F), 5),
-                    Bits.test(registerFile.get(Reg.F), 4));
-            setRegFromAlu(Reg.A, vf);
-            combineAluFlags(vf, FlagSrc.ALU, FlagSrc.CPU, FlagSrc.V0,
-                    FlagSrc.ALU);
-        }
-            break;
+        case DAA:
+            return (c, pc) -> {
+                int f = c.reg(Reg.F);
+                int vf = Alu.bcdAdjust(c.reg(Reg.A),
+                        Bits.test(f, 6), Bits.test(f, 5), Bits.test(f, 4));
+                c.setRegFromAlu(Reg.A, vf);
+                c.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.CPU, FlagSrc.V0,
+                        FlagSrc.ALU);
+                return pc;
+            };
 
         case SCCF: {
-            if (!getCarryADD(opcode))
-                combineAluFlags(0, FlagSrc.CPU, FlagSrc.V0, FlagSrc.V0,
-                        FlagSrc.V1);
-            else
-                combineAluFlags(0, FlagSrc.CPU, FlagSrc.V0, FlagSrc.V0,
-                        FlagSrc.V0);
+            boolean complement = Bits.test(opcode.encoding, 3);
+            return (c, pc) -> {
+                c.combineAluFlags(0, FlagSrc.CPU, FlagSrc.V0, FlagSrc.V0,
+                        complement && c.carry() ? FlagSrc.V0 : FlagSrc.V1);
+                return pc;
+            };
         }
-            break;
 
         // Jumps
-        case JP_HL: {
-            nextPc = reg16(Reg16.HL);
-        }
-            break;
+        case JP_HL:
+            return (c, pc) -> c.reg16(Reg16.HL);
 
-        case JP_N16: {
-            nextPc = read16AfterOpcode();
-        }
-            break;
+        case JP_N16:
+            return (c, pc) -> c.read16AfterOpcode();
 
         case JP_CC_N16: {
-            if (condition(opcode)) {
-                nextPc = read16AfterOpcode();
-                nextNonIdleCycle += opcode.additionalCycles;
-            }
+            int cc = extractCondition(opcode);
+            int additionalCycles = opcode.additionalCycles;
+            return (c, pc) -> {
+                if (!c.condition(cc))
+                    return pc;
+                c.nextNonIdleCycle += additionalCycles;
+                return c.read16AfterOpcode();
+            };
         }
-            break;
 
-        case JR_E8: {
-            int e = Bits.signExtend8(read8AfterOpcode());
-            nextPc = Bits.clip(16, nextPc + e);
-        }
-            break;
+        case JR_E8:
+            return (c, pc) -> Bits.clip(16,
+                    pc + Bits.signExtend8(c.read8AfterOpcode()));
+
         case JR_CC_E8: {
-            if (condition(opcode)) {
-                int e = Bits.signExtend8(read8AfterOpcode());
-                nextPc = Bits.clip(16, nextPc + e);
-                nextNonIdleCycle += opcode.additionalCycles;
-            }
+            int cc = extractCondition(opcode);
+            int additionalCycles = opcode.additionalCycles;
+            return (c, pc) -> {
+                if (!c.condition(cc))
+                    return pc;
+                c.nextNonIdleCycle += additionalCycles;
+                return Bits.clip(16,
+                        pc + Bits.signExtend8(c.read8AfterOpcode()));
+            };
         }
-            break;
 
         // Calls and returns
-        case CALL_N16: {
-            push16(nextPc);
-            nextPc = read16AfterOpcode();
-        }
-            break;
+        case CALL_N16:
+            return (c, pc) -> {
+                c.push16(pc);
+                return c.read16AfterOpcode();
+            };
 
         case CALL_CC_N16: {
-            if (condition(opcode)) {
-                push16(nextPc);
-                nextPc = read16AfterOpcode();
-                nextNonIdleCycle += opcode.additionalCycles;
-            }
+            int cc = extractCondition(opcode);
+            int additionalCycles = opcode.additionalCycles;
+            return (c, pc) -> {
+                if (!c.condition(cc))
+                    return pc;
+                c.push16(pc);
+                c.nextNonIdleCycle += additionalCycles;
+                return c.read16AfterOpcode();
+            };
         }
-            break;
 
         case RST_U3: {
-            push16(nextPc);
-            nextPc = AddressMap.RESETS[extractN3(opcode)];
+            int address = AddressMap.RESETS[extractN3(opcode)];
+            return (c, pc) -> {
+                c.push16(pc);
+                return address;
+            };
         }
-            break;
 
-        case RET: {
-            nextPc = pop16();
-        }
-            break;
+        case RET:
+            return (c, pc) -> c.pop16();
 
         case RET_CC: {
-            if (condition(opcode)) {
-                nextPc = pop16();
-                nextNonIdleCycle += opcode.additionalCycles;
-            }
+            int cc = extractCondition(opcode);
+            int additionalCycles = opcode.additionalCycles;
+            return (c, pc) -> {
+                if (!c.condition(cc))
+                    return pc;
+                c.nextNonIdleCycle += additionalCycles;
+                return c.pop16();
+            };
         }
-            break;
 
         // Interrupts
         case EDI: {
-           
-                ime = Bits.test(opcode.encoding, 3);
+            boolean ime = Bits.test(opcode.encoding, 3);
+            return (c, pc) -> {
+                c.ime = ime;
+                return pc;
+            };
         }
-            break;
 
-        case RETI: {
-            ime = true;
-            nextPc = pop16();
-        }
-            break;
+        case RETI:
+            return (c, pc) -> {
+                c.ime = true;
+                return c.pop16();
+            };
 
         // Misc control
-        case HALT: {
-            nextNonIdleCycle = Long.MAX_VALUE;
-        }
-            break;
+        case HALT:
+            return (c, pc) -> {
+                c.nextNonIdleCycle = Long.MAX_VALUE;
+                return pc;
+            };
 
         case STOP:
-            throw new Error("STOP is not implemented");
-        }
+            return (c, pc) -> {
+                throw new Error("STOP is not implemented");
+            };
 
-        PC = nextPc;
-        nextNonIdleCycle += opcode.cycles;
+        default:
+            throw new Error();
+        }
     }
 
     @Override
@@ -726,13 +1159,14 @@ public final class Cpu implements Component, Clocked {
         t[0] = PC;
         t[1] = SP;
         for (int i = 0; i < 8; i++)
-            t[i + 2] = registerFile.get(Reg.values()[i]);
+            t[i + 2] = regs[i];
         return t;
     }
 
     @Override
     public void attachTo(Bus bus) {
-        bus.attach(this);
+        bus.attach(this, AddressMap.REG_IF, AddressMap.REG_IF + 1);
+        bus.attach(this, AddressMap.HIGH_RAM_START, AddressMap.REG_IE + 1);
         this.bus = bus;
     }
 
@@ -748,23 +1182,25 @@ public final class Cpu implements Component, Clocked {
     }
 
     /**
-     * Constructs an Opcode Table containing all the opcodes of the given kind
+     * Constructs an Opcode Table containing all the opcodes, indexed by their
+     * encoding, plus 256 for the prefixed ones
      * 
-     * @param kind
-     *            a kind of Opcode
-     * @return an Opcode array of the given kind
+     * @return an Opcode array of size 512
      */
-    private static Opcode[] buildOpcodeTable(Opcode.Kind kind) {
-        Opcode[] opcode = new Opcode[256];
+    private static Opcode[] buildOpcodeTable() {
+        Opcode[] opcode = new Opcode[2 * PREFIXED_INDEX];
         for (Opcode o : Opcode.values())
-            if (o.kind.equals(kind))
-                opcode[o.encoding] = o;
+            opcode[(o.kind == Opcode.Kind.PREFIXED ? PREFIXED_INDEX : 0)
+                    + o.encoding] = o;
 
         return opcode;
     }
 
     /**
-     * Reads from the bus the value 8 bits at the given address
+     * Reads from the bus the value 8 bits at the given address, except for
+     * the high random-access memory, which belongs to the processor and which
+     * is read directly, as its page is shared with the input/output registers
+     * and cannot be mapped on the bus
      *
      * @param address
      *            integer value of 16 bits, the location at which we want to
@@ -775,6 +1211,19 @@ public final class Cpu implements Component, Clocked {
      * 
      */
     private int read8(int address) {
+        if (address >= AddressMap.HIGH_RAM_START
+                && address < AddressMap.HIGH_RAM_END)
+            return highRam.read(address - AddressMap.HIGH_RAM_START);
+        if (address >= AddressMap.REG_DIV && address <= AddressMap.REG_TAC)
+            loopVolatile = true;
+        else if (address == AddressMap.REG_STAT
+                || address == AddressMap.REG_LY) {
+            if (lcdController == null)
+                loopVolatile = true;
+            else
+                loopHorizon = Math.min(loopHorizon,
+                        lcdController.nextRegisterChange(address));
+        }
         return bus.read(address);
     }
 
@@ -820,7 +1269,8 @@ public final class Cpu implements Component, Clocked {
     }
 
     /**
-     * Writes on the bus, at the given address, the given 8-bit value,
+     * Writes on the bus, at the given address, the given 8-bit value, and
+     * records whether it is an input/output register
      * 
      * @param address
      *            integer value of 16 bits, the location at which we want to
@@ -830,6 +1280,13 @@ public final class Cpu implements Component, Clocked {
      */
     private void write8(int address, int v) {
         bus.write(address, v);
+        loopWritten = true;
+        if (blockCache != null)
+            blockCache.written(address);
+        if (address >= AddressMap.REGS_START
+                && (address < AddressMap.HIGH_RAM_START
+                        || address == AddressMap.REG_IE))
+            registerWritten = true;
     }
 
     /**
@@ -860,7 +1317,7 @@ public final class Cpu implements Component, Clocked {
      *            an 8-value to be stored in the pair HL
      */
     private void write8AtHl(int v) {
-        bus.write(reg16(Reg16.HL), v);
+        write8(reg16(Reg16.HL), v);
     }
 
     /**
@@ -899,7 +1356,7 @@ public final class Cpu implements Component, Clocked {
      *            Integer, starting bit index
      * @return a Reg corresponding to the 3 extracted bits from the opcode
      */
-    private Reg extractReg(Opcode opcode, int startBit) {
+    private static Reg extractReg(Opcode opcode, int startBit) {
         int e = opcode.encoding;
         int r = Bits.extract(e, startBit, 3);
         if (r == 0b111)
@@ -917,7 +1374,7 @@ public final class Cpu implements Component, Clocked {
      * @return a Reg16 corresponding to the 2 extracted bits from the opcode
      *         starting at the 4th bit
      */
-    private Reg16 extractReg16(Opcode opcode) {
+    private static Reg16 extractReg16(Opcode opcode) {
         int e = opcode.encoding;
         int r = Bits.extract(e, 4, 2);
         return Reg16.values()[Bits.clip(2, r + 1)];
@@ -932,19 +1389,40 @@ public final class Cpu implements Component, Clocked {
      *            tells the processor what operations need to be performed.
      * @return -1 or +1 based on the index bit 4,
      */
-    private int extractHlIncrement(Opcode opcode) {
+    private static int extractHlIncrement(Opcode opcode) {
         int e = opcode.encoding;
         return Bits.test(e, 4) ? -1 : 1;
     }
 
+    /**
+     * @param r
+     *            a {@link Reg}
+     * @return integer value of 8 bits, the content of the given register
+     */
+    private int reg(Reg r) {
+        return regs[r.index()];
+    }
+
+    /**
+     * Modifies the content of the given register
+     * 
+     * @param r
+     *            a {@link Reg}
+     * @param v
+     *            integer value of 8 bits, the new content of the register
+     */
+    private void setReg(Reg r, int v) {
+        regs[r.index()] = v;
+    }
+
     /**
      * @param r
      *            a Reg16 representing the register pair
      * @return the value contained in the given register pair,
      */
     private int reg16(Reg16 r) {
-        return Bits.make16(registerFile.get(Reg.values()[(r.index() * 2)]),
-                registerFile.get(Reg.values()[(r.index() * 2) + 1]));
+        int i = r.index() * 2;
+        return regs[i] << 8 | regs[i + 1];
     }
 
     /**
@@ -957,6 +1435,20 @@ public final class Cpu implements Component, Clocked {
         return (r.index() == 0) ? SP : reg16(r);
     }
 
+    /**
+     * Adds 1 or -1 to the pair HL, as its post-increment and post-decrement
+     * addressing does, in place: H only changes when L wraps around
+     * 
+     * @param increment
+     *            integer value, 1 or -1
+     */
+    private void addToHl(int increment) {
+        int l = regs[Reg.L.index()] + increment;
+        regs[Reg.L.index()] = l & 0xFF;
+        if (l >>> 8 != 0)
+            regs[Reg.H.index()] = (regs[Reg.H.index()] + (l >> 8)) & 0xFF;
+    }
+
     /**
      * Modifies the value contained in the given register pair, bearing in mind
      * to set the low-order bits to 0 if the pair in question is AF
@@ -967,16 +1459,9 @@ public final class Cpu implements Component, Clocked {
      *            the new value that will be stored on the given pair
      */
     private void setReg16(Reg16 r, int newV) {
-        {
-            int LSB = Bits.clip(8, newV);
-            int MSB = Bits.extract(newV, 8, 8);
-            if (r.index() == 0) {
-                LSB = Bits.extract(LSB, 4, 4);
-                LSB = LSB << 4;
-            }
-            registerFile.set(Reg.values()[r.index() * 2], MSB);
-            registerFile.set(Reg.values()[r.index() * 2 + 1], LSB);
-        }
+        int i = r.index() * 2;
+        regs[i] = (newV >>> 8) & 0xFF;
+        regs[i + 1] = i == 0 ? newV & 0xF0 : newV & 0xFF;
     }
 
     /**
@@ -1007,7 +1492,7 @@ public final class Cpu implements Component, Clocked {
      *            the {@link Alu} methods
      */
     private void setRegFromAlu(Reg r, int vf) {
-        registerFile.set(r, Alu.unpackValue(vf));
+        setReg(r, Alu.unpackValue(vf));
     }
 
     /**
@@ -1018,7 +1503,7 @@ public final class Cpu implements Component, Clocked {
      *            flags stored in the given pair
      */
     private void setFlags(int valueFlags) {
-        registerFile.set(Reg.F, Alu.unpackFlags(valueFlags));
+        setReg(Reg.F, Alu.unpackFlags(valueFlags));
     }
 
     /**
@@ -1031,8 +1516,8 @@ public final class Cpu implements Component, Clocked {
      *            the Alu methods
      */
     private void setRegFlags(Reg r, int vf) {
-        registerFile.set(r, Alu.unpackValue(vf));
-        registerFile.set(Reg.F, Alu.unpackFlags(vf));
+        setReg(r, Alu.unpackValue(vf));
+        setReg(Reg.F, Alu.unpackFlags(vf));
     }
 
     /**
@@ -1046,7 +1531,7 @@ public final class Cpu implements Component, Clocked {
      */
     private void write8AtHlAndSetFlags(int vf) {
         write8AtHl(Alu.unpackValue(vf));
-        registerFile.set(Reg.F, Alu.unpackFlags(vf));
+        setReg(Reg.F, Alu.unpackFlags(vf));
     }
 
     /**
@@ -1056,7 +1541,7 @@ public final class Cpu implements Component, Clocked {
      * @return an int representing a 3-bit values extracted from bit index
      *         3(included) to bit index 6(excluded)
      */
-    private int extractN3(Opcode o) {
+    private static int extractN3(Opcode o) {
         return Bits.extract(o.encoding, 3, 3);
     }
 
@@ -1067,7 +1552,7 @@ public final class Cpu implements Component, Clocked {
      * @return {@link RotDir}, the rotation direction
      * 
      */
-    private RotDir rotDir(Opcode o) {
+    private static RotDir rotDir(Opcode o) {
         if (Bits.test(o.encoding, 3))
             return RotDir.RIGHT;
         else
@@ -1080,7 +1565,7 @@ public final class Cpu implements Component, Clocked {
      *            tells the processor what operations need to be performed.
      * @return a boolean representing the truth value of bit index 6
      */
-    private boolean test6_Opcode(Opcode o) {
+    private static boolean test6_Opcode(Opcode o) {
         return Bits.test(o.encoding, 6);
     }
 
@@ -1099,7 +1584,7 @@ public final class Cpu implements Component, Clocked {
         }
 
         default: {
-            return Bits.test(registerFile.get(Reg.F), index);
+            return Bits.test(reg(Reg.F), index);
         }
 
                }
@@ -1127,46 +1612,48 @@ public final class Cpu implements Component, Clocked {
         int r = Alu.maskZNHC(Fatima(z.ordinal(), vf, 7),
                 Fatima(n.ordinal(), vf, 6), Fatima(h.ordinal(), vf, 5),
                 Fatima(c.ordinal(), vf, 4));
-        registerFile.set(Reg.F, r);
+        setReg(Reg.F, r);
+    }
+
+    /**
+     * @return boolean true if and only if the fanion C is true
+     */
+    private boolean carry() {
+        return Bits.test(reg(Reg.F), 4);
     }
 
     /**
      * @param o
      *            an {@link Opcode}, is the first byte of the instruction, that
      *            tells the processor what operations need to be performed.
-     * @return boolean true if and only if 3th bit of opcode and fanion C are
-     *         both true
+     * @return an int representing the 2-bit condition code extracted from
+     *         bit index 3(included) to bit index 5(excluded)
      */
-    private boolean getCarryADD(Opcode o) {
-        if (Bits.test(o.encoding, 3) && Bits.test(registerFile.get(Reg.F), 4))
-            return true;
-        else
-            return false;
+    private static int extractCondition(Opcode o) {
+        return Bits.extract(o.encoding, 3, 2);
     }
 
     /**
-     * Extracts the condition from an opcode according to the corresponding
-     * flags either Z or C
+     * Evaluates the given condition code according to the corresponding flags
+     * either Z or C
      * 
-     * @param o
-     *            an {@link Opcode}, is the first byte of the instruction, that
-     *            tells the processor what operations need to be performed.
+     * @param cc
+     *            an int, the 2-bit condition code of an instruction
      * @return boolean, the condition
      */
-    private boolean condition(Opcode o) {
-        int cc = Bits.extract(o.encoding, 3, 2);
+    private boolean condition(int cc) {
         switch (cc) {
         case 0:
-            return !Bits.test(registerFile.get(Reg.F), 7);
+            return !Bits.test(reg(Reg.F), 7);
 
         case 1:
-            return Bits.test(registerFile.get(Reg.F), 7);
+            return Bits.test(reg(Reg.F), 7);
 
         case 2:
-            return !Bits.test(registerFile.get(Reg.F), 4);
+            return !carry();
 
         default:
-            return Bits.test(registerFile.get(Reg.F), 4);
+            return carry();
         }
     }
 
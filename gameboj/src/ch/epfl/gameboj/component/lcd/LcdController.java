@@ -1,6 +1,5 @@
 package ch.epfl.gameboj.component.lcd;
 
-import java.util.Arrays;
 import java.util.Objects;
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Bus;
@@ -31,6 +30,15 @@ import ch.epfl.gameboj.component.memory.Ram;
 
 public final class LcdController implements Component, Clocked {
 
+    /**
+     * Name of the system property which, when set to true, makes the
+     * controllers constructed afterwards draw their frames on a thread of
+     * their own, from the registers recorded when each line would have been
+     * drawn and the writes to the memories logged before; the images are the
+     * same, the current one being awaited if it is not drawn yet
+     */
+    public static final String PIPELINED_PROPERTY = "gameboj.lcd.pipelined";
+
     public static final int LCD_WIDTH = 160;
     public static final int LCD_HEIGHT = 144;
     private static final int DRAW_IMAGE_CYCLES = 17556;
@@ -39,25 +47,34 @@ public final class LcdController implements Component, Clocked {
     private static final int MODE_0_CYCLES = 51;
     private static final int MODE_2_CYCLES = 20;
     private static final int MODE_3_CYCLES = 43;
-    private static final int LINES_IN_TILE = 8;
-    private static final int TILES_IN_BGLINE = 32;
-    private static final int TOTAL_SPRITES = 40;
-    private static final int MAX_SPRITES_LINE = 10;
-    private static final int BG_LINES = 32;
-    private static final int FG_LINES = 20;
-    private static final int WX_OFFSET = 7;
-    private static final int X_OFFSET = 8;
-    private static final int Y_OFFSET = 16;
-    private static final int BYTES_IN_SPRITE_ATTRIBUTE = 4;
     private final Ram OAM, videoRam;
+    private final LineRenderer renderer;
+    // The worker drawing the frames on its own thread, if any
+    private final RenderWorker worker;
     private Bus bus;
-    private long nextNonIdleCycle, lcdOnCycle = 0;
+    // The cycle of the next event, i.e. the next mode change that raises an
+    // interrupt or draws a line, Long.MAX_VALUE while the screen is off
+    private long nextNonIdleCycle, lcdOnCycle = 0, lastCycle = -1;
     private final Cpu cpu;
     private int winY;
-    private int adressSource, adressDestination;
+    // The OAM DMA copies a byte per cycle from its start, but the bytes are
+    // only copied when OAM is accessed or at the end of the copy
+    private int dmaSource, dmaCopied;
+    private long dmaStartCycle;
+    // The lines of the last image drawn and of the one being drawn, the
+    // former being converted to an LcdImage only when requested
+    private LineBuffer[] lines, nextLines;
     private LcdImage image;
+    // Only one frame in frameInterval is drawn, or only the requested ones
+    // if it is 0; the others are simulated without drawing any pixel
+    private int frameInterval = 1;
+    private long frameCounter = 0;
+    private boolean drawing = true, frameRequested = false;
     private final RegisterFile<Reg> reg = new RegisterFile<>(Reg.values());
-    private LcdImage.Builder nextImageBuilder;
+    // The registers read to draw a line, in the order of their indexes in
+    // the inputs of the LineRenderer
+    private static final Reg[] LINE_INPUTS = { Reg.LCDC, Reg.SCY, Reg.SCX,
+            Reg.WY, Reg.WX, Reg.BGP, Reg.OBP0, Reg.OBP1 };
 
     /**
      * Enumeration of the modes that represents the 4 states of the LCD
@@ -78,7 +95,7 @@ public final class LcdController implements Component, Clocked {
     /**
      * Enumeration of 8 Bits of the LCDC register
      */
-    private enum BitsLCDC implements Bit {
+    enum BitsLCDC implements Bit {
         BG, OBJ, OBJ_SIZE, BG_AREA, TILE_SOURCE, WIN, WIN_AREA, LCD_STATUS
     }
 
@@ -101,12 +118,16 @@ public final class LcdController implements Component, Clocked {
     public LcdController(Cpu cpu) {
         Objects.requireNonNull(cpu);
         this.cpu = cpu;
-        this.image = new LcdImage.Builder(LCD_HEIGHT, LCD_WIDTH).build();
-        this.nextImageBuilder = new LcdImage.Builder(LCD_HEIGHT, LCD_WIDTH);
+        this.lines = newLines();
+        this.nextLines = newLines();
         nextNonIdleCycle = Long.MAX_VALUE;
         videoRam = new Ram(AddressMap.VIDEO_RAM_SIZE);
         OAM = new Ram(AddressMap.OAM_RAM_SIZE);
-        adressSource = Integer.MAX_VALUE;
+        renderer = new LineRenderer(videoRam, OAM);
+        worker = Boolean.getBoolean(PIPELINED_PROPERTY)
+                ? new RenderWorker(videoRam, OAM)
+                : null;
+        dmaCopied = AddressMap.OAM_RAM_SIZE;
     }
 
     /**
@@ -116,13 +137,84 @@ public final class LcdController implements Component, Clocked {
      * @return {@link LcdImage}: the current image
      */
     public LcdImage currentImage() {
+        if (worker != null) {
+            LcdImage drawn = worker.lastImage();
+            if (drawn != null)
+                return drawn;
+        }
+        if (image == null)
+            image = LcdImage.ofLines(lines);
         return image;
     }
 
+    /**
+     * Sets the number of frames simulated for each frame drawn, starting
+     * with the next frame: 1 draws every frame, n draws one frame in n and 0
+     * only draws the frames requested with {@link #requestFrame()}. The
+     * frames not drawn raise the same interrupts and give the same values
+     * to the registers, but {@link #currentImage()} stays the last image
+     * drawn
+     * 
+     * @param interval
+     *            integer, the number of frames for each frame drawn, or 0
+     * @throws IllegalArgumentException
+     *             if the interval is negative
+     */
+    public void setFrameSkip(int interval) {
+        Preconditions.checkArgument(interval >= 0);
+        frameInterval = interval;
+        frameCounter = 0;
+    }
+
+    /**
+     * Requests the next frame started to be drawn, whatever the frame skip
+     */
+    public void requestFrame() {
+        frameRequested = true;
+    }
+
+    /**
+     * Returns the number of rows of tiles drawn that were already decoded,
+     * waiting for the last frame to be drawn if the frames are drawn on a
+     * thread of their own
+     * 
+     * @return long: the number of hits of the cache of decoded tiles
+     */
+    public long tileCacheHits() {
+        return worker != null ? worker.tileCacheHits()
+                : renderer.tileCacheHits();
+    }
+
+    /**
+     * Returns the number of rows of tiles drawn that had to be decoded from
+     * the video memory, as they were not drawn since they were last written,
+     * waiting for the last frame to be drawn if the frames are drawn on a
+     * thread of their own
+     * 
+     * @return long: the number of misses of the cache of decoded tiles
+     */
+    public long tileCacheMisses() {
+        return worker != null ? worker.tileCacheMisses()
+                : renderer.tileCacheMisses();
+    }
+
+    private static LineBuffer[] newLines() {
+        LineBuffer[] lines = new LineBuffer[LCD_HEIGHT];
+        for (int y = 0; y < LCD_HEIGHT; ++y)
+            lines[y] = new LineBuffer(LCD_WIDTH);
+        return lines;
+    }
+
     @Override
     public void attachTo(Bus bus) {
         this.bus = bus;
-        bus.attach(this);
+        bus.attach(this, AddressMap.VIDEO_RAM_START, AddressMap.VIDEO_RAM_END);
+        // The writes to the video memory still go through the controller
+        videoRam.mapTo(bus, this, AddressMap.VIDEO_RAM_START,
+                AddressMap.VIDEO_RAM_END, 0, false);
+        bus.attach(this, AddressMap.OAM_START, AddressMap.OAM_END);
+        bus.attach(this, AddressMap.REGS_LCDC_START,
+                AddressMap.REGS_LCDC_END);
     }
 
     @Override
@@ -132,9 +224,14 @@ public final class LcdController implements Component, Clocked {
                 && address < AddressMap.VIDEO_RAM_END)
             return videoRam.read(address - AddressMap.VIDEO_RAM_START);
         if (address >= AddressMap.REGS_LCDC_START
-                && address < AddressMap.REGS_LCDC_END)
-            return reg.get(Reg.values()[address - AddressMap.REGS_LCDC_START]);
+                && address < AddressMap.REGS_LCDC_END) {
+            Reg r = getReg(address);
+            if (r == Reg.STAT || r == Reg.LY)
+                updateLY_STAT();
+            return reg.get(r);
+        }
         if (address >= AddressMap.OAM_START && address < AddressMap.OAM_END) {
+            dmaCopy(currentCycle());
             return OAM.read(address - AddressMap.OAM_START);
         }
         return NO_DATA;
@@ -147,12 +244,16 @@ public final class LcdController implements Component, Clocked {
         if (address >= AddressMap.REGS_LCDC_START
                 && address < AddressMap.REGS_LCDC_END) {
             Reg r = getReg(address);
+            updateLY_STAT();
             switch (r) {
             case LY:
                 break;
             case STAT:
                 data = data & 0xF8;
                 reg.set(Reg.STAT, Bits.clip(3, reg.get(Reg.STAT)) | data);
+                // The interrupts to raise determine the next event
+                if (nextNonIdleCycle != Long.MAX_VALUE)
+                    nextNonIdleCycle = nextEvent(currentCycle());
                 break;
             case LCDC:
                 reg.set(Reg.LCDC, data);
@@ -160,15 +261,21 @@ public final class LcdController implements Component, Clocked {
                     setMode(Modes.MODE_0);
                     writeLY_LYC(Reg.LY, 0);
                     nextNonIdleCycle = Long.MAX_VALUE;
+                    if (worker != null)
+                        worker.screenTurnedOff();
                 }
                 break;
             case LYC:
                 writeLY_LYC(Reg.LYC, data);
+                if (nextNonIdleCycle != Long.MAX_VALUE)
+                    nextNonIdleCycle = nextEvent(currentCycle());
                 break;
             case DMA:
                 reg.set(Reg.DMA, data);
-                adressSource = Bits.make16(data, 0);
-                adressDestination = 0;
+                dmaCopy(currentCycle());
+                dmaSource = Bits.make16(data, 0);
+                dmaStartCycle = currentCycle();
+                dmaCopied = 0;
                 break;
             default:
                 reg.set(r, data);
@@ -177,24 +284,30 @@ public final class LcdController implements Component, Clocked {
         } else if (address >= AddressMap.VIDEO_RAM_START
                 && address < AddressMap.VIDEO_RAM_END) {
             videoRam.write(address - AddressMap.VIDEO_RAM_START, data);
+            if (worker != null)
+                worker.videoRamWritten(address - AddressMap.VIDEO_RAM_START,
+                        data);
+            else
+                renderer.videoRamWritten(address);
         } else if (address >= AddressMap.OAM_START
                 && address < AddressMap.OAM_END) {
+            dmaCopy(currentCycle());
             OAM.write(address - AddressMap.OAM_START, data);
+            if (worker != null)
+                worker.OAMWritten(address - AddressMap.OAM_START, data);
+            else
+                renderer.OAMWritten(address - AddressMap.OAM_START);
         }
     }
 
     @Override
     public void cycle(long cycle) {
-
-        if (adressSource != Integer.MAX_VALUE
-                && adressDestination < AddressMap.OAM_RAM_SIZE) {
-            OAM.write(adressDestination, bus.read(adressSource));
-            adressDestination++;
-            adressSource++;
-        }
+        if (cycle <= lastCycle)
+            return;
+        lastCycle = cycle;
+        dmaCopy(cycle);
 
         if (nextNonIdleCycle == Long.MAX_VALUE && screenOn()) {
-            setMode(Modes.MODE_2);
             nextNonIdleCycle = cycle;
             lcdOnCycle = cycle;
         }
@@ -203,248 +316,267 @@ public final class LcdController implements Component, Clocked {
             reallyCycle();
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Clocked#nextNonIdleCycle(long)
+     */
+    @Override
+    public long nextNonIdleCycle(long cycle) {
+        long next = nextNonIdleCycle;
+        if (next == Long.MAX_VALUE && screenOn())
+            next = cycle;
+        // A running DMA copy ends after a byte has been copied per cycle
+        if (dmaCopied < AddressMap.OAM_RAM_SIZE)
+            next = Math.min(next, dmaStartCycle + AddressMap.OAM_RAM_SIZE);
+        return next;
+    }
+
     /**
-     * Switches the LcdController Modes and draws every image Line by Line, it
-     * raises VBLANK and LCDSTAT interruptions when necessary.
+     * Returns the first cycle after the current one at which the register LY
+     * or STAT, which change on their own, may have a value different from the
+     * one read now, if nothing is written to the controller in the meantime
+     *
+     * @param address
+     *            integer, the address of LY or STAT
+     * @return long, the cycle of the next line for LY, of the next mode
+     *         change for STAT, or Long.MAX_VALUE if the screen is off
+     * @throws IllegalArgumentException
+     *             if the address is not the one of LY or STAT
+     */
+    public long nextRegisterChange(int address) {
+        Preconditions.checkArgument(address == AddressMap.REG_LY
+                || address == AddressMap.REG_STAT);
+        long cycle = currentCycle();
+        if (nextNonIdleCycle == Long.MAX_VALUE)
+            return screenOn() ? cycle : Long.MAX_VALUE;
+        long cycleInImage = (cycle - lcdOnCycle) % DRAW_IMAGE_CYCLES;
+        int line = (int) (cycleInImage / DRAW_LINE_CYCLES);
+        int cycleInLine = (int) (cycleInImage % DRAW_LINE_CYCLES);
+        long lineStart = cycle - cycleInLine;
+        if (address == AddressMap.REG_STAT && line < LCD_HEIGHT) {
+            if (cycleInLine < MODE_2_CYCLES)
+                return lineStart + MODE_2_CYCLES;
+            if (cycleInLine < MODE_2_CYCLES + MODE_3_CYCLES)
+                return lineStart + MODE_2_CYCLES + MODE_3_CYCLES;
+        }
+        return lineStart + DRAW_LINE_CYCLES;
+    }
+
+    /**
+     * Performs the work of the mode change of the current event: raises the
+     * VBLANK and LCD_STAT interrupts when necessary and draws the image line
+     * by line, then schedules the next event. The mode changes that do
+     * nothing else than changing STAT and LY are not simulated, as these
+     * registers are computed from the cycle when accessed
      * 
      */
     public void reallyCycle() {
-
-        long numberOfCyclesInImage = (nextNonIdleCycle - lcdOnCycle)
+        long cycleInImage = (nextNonIdleCycle - lcdOnCycle)
                 % DRAW_IMAGE_CYCLES;
-        int currentLine = (int) (numberOfCyclesInImage / DRAW_LINE_CYCLES);
+        int currentLine = (int) (cycleInImage / DRAW_LINE_CYCLES);
         assert 0 <= currentLine && currentLine < LY_MAX_VALUE;
-        int currentCycleLine = (int) (numberOfCyclesInImage) % DRAW_LINE_CYCLES;
-        //transition trough modes
-        if (currentLine >= 0 && currentLine < LCD_HEIGHT) {
-            //mode 2 
-            if (0 <= currentCycleLine && currentCycleLine < MODE_2_CYCLES) {
-                setMode(Modes.MODE_2);
+        int currentCycleLine = (int) (cycleInImage % DRAW_LINE_CYCLES);
+        if (currentLine < LCD_HEIGHT) {
+            switch (currentCycleLine) {
+            case 0:
                 lcdStatInterrupt(Modes.MODE_2);
-                nextNonIdleCycle += MODE_2_CYCLES;
-                writeLY_LYC(Reg.LY, currentLine);
-
-                if (currentLine == 0) {
-                    nextImageBuilder = new LcdImage.Builder(LCD_HEIGHT,
-                            LCD_WIDTH);
-                    winY = 0;
-                }
-            }
-            //mode 3
-            else if (MODE_2_CYCLES <= currentCycleLine
-                    && currentCycleLine < MODE_2_CYCLES + MODE_3_CYCLES) {
-                setMode(Modes.MODE_3);
-                nextNonIdleCycle += MODE_3_CYCLES;
-                nextImageBuilder.setLine(computeLine(currentLine), currentLine);
-
-            }
-            //mode 0
-            else {
-                setMode(Modes.MODE_0);
+                lycInterrupt(currentLine);
+                break;
+            case MODE_2_CYCLES:
+                if (currentLine == 0)
+                    startFrame();
+                long inputs = lineInputs();
+                if (drawing && worker != null)
+                    worker.record(currentLine, inputs, winY);
+                else if (drawing)
+                    renderer.draw(currentLine, inputs, winY,
+                            nextLines[currentLine]);
+                if (LineRenderer.windowDrawn(inputs, currentLine))
+                    winY++;
+                break;
+            default:
                 lcdStatInterrupt(Modes.MODE_0);
-                nextNonIdleCycle += MODE_0_CYCLES;
             }
-        } 
-        //mode 1
-        else {
-            setMode(Modes.MODE_1);
+        } else {
             lcdStatInterrupt(Modes.MODE_1);
-            nextNonIdleCycle += DRAW_LINE_CYCLES;
-            writeLY_LYC(Reg.LY, currentLine);
+            lycInterrupt(currentLine);
             if (currentLine == LCD_HEIGHT) {
                 cpu.requestInterrupt(Interrupt.VBLANK);
-                image = nextImageBuilder.build();
+                if (drawing && worker != null)
+                    worker.endFrame();
+                else if (drawing)
+                    swapLines();
             }
         }
+        nextNonIdleCycle = nextEvent(nextNonIdleCycle);
     }
 
     /**
-     * Writes the given value in LY or LYC
-     * 
-     * @param r
-     *            the given register that can be either LY or LYC
-     * @param v
-     *            8 bit value
+     * Makes the lines drawn during the frame the lines of the current image
      */
-    private void writeLY_LYC(Reg r, int v) {
-        Preconditions.checkBits8(v);
-        Preconditions.checkArgument(r == Reg.LY || r == Reg.LYC);
-        reg.set(r, v);
-        boolean equals = (reg.get(Reg.LY) == reg.get(Reg.LYC));
-        reg.setBit(Reg.STAT, BitsSTAT.LYC_EQ_LY, equals);
-        if (equals && reg.testBit(Reg.STAT, BitsSTAT.INT_LYC))
-            cpu.requestInterrupt(Interrupt.LCD_STAT);
+    private void swapLines() {
+        LineBuffer[] drawn = nextLines;
+        nextLines = lines;
+        lines = drawn;
+        image = null;
     }
 
     /**
-     * Setting to 2 lower bits of the register STAT to match the given mode
+     * Returns the registers read to draw a line, packed in a long
      * 
-     * @param mode
-     *            the {@link Modes} we want to set
+     * @return long, the inputs of the line for the {@link LineRenderer}
      */
-    private void setMode(Modes mode) {
-        reg.setBit(Reg.STAT, BitsSTAT.MODE0, Bits.test(mode.ordinal(), 0));
-        reg.setBit(Reg.STAT, BitsSTAT.MODE1, Bits.test(mode.ordinal(), 1));
+    private long lineInputs() {
+        long inputs = 0;
+        for (int i = LINE_INPUTS.length - 1; i >= 0; --i)
+            inputs = inputs << Byte.SIZE | reg.get(LINE_INPUTS[i]);
+        return inputs;
     }
 
     /**
-     * Computes the {@link LcdImageLine} of the given index which contains one sprite of the
-     * given index
-     * 
-     * @param spriteIndex
-     *            index of the sprite
-     * @param lineIndex
-     *            index of the line
-     * @return {@link LcdImageLine}: the computed sprite individual line
+     * Starts a new frame, deciding whether it is drawn
      */
-    private LcdImageLine spriteIndividualLine(int spriteIndex, int lineIndex) {
-        Objects.checkIndex(lineIndex, LCD_HEIGHT);
-        Objects.checkIndex(spriteIndex, TOTAL_SPRITES);
-        LcdImageLine.Builder builder = new LcdImageLine.Builder(LCD_WIDTH);
-        boolean hFlip = byte3_SpriteTest(spriteIndex, 5),
-                vFlip = byte3_SpriteTest(spriteIndex, 6),
-                palette = byte3_SpriteTest(spriteIndex, 4);
-        int tileStartByteSprites = vFlip
-                ? (spriteSize() - 1 - lineIndex + spriteY(spriteIndex))
-                : lineIndex - spriteY(spriteIndex);
-        int tileIndex = spriteByte(spriteIndex, 2);
-        int MSB = msbAddress(1, tileIndex, tileStartByteSprites * 2);
-        int LSB = lsbAddress(1, tileIndex, tileStartByteSprites * 2);
-        builder = hFlip ? builder.setByte(0, MSB, LSB)
-                : builder.setByte(0, Bits.reverse8(MSB), Bits.reverse8(LSB));
-        return palette
-                ? builder.build().shift(spriteX(spriteIndex))
-                        .mapColors(reg.get(Reg.OBP1))
-                : builder.build().shift(spriteX(spriteIndex))
-                        .mapColors(reg.get(Reg.OBP0));
+    private void startFrame() {
+        winY = 0;
+        drawing = frameRequested
+                || (frameInterval > 0 && frameCounter % frameInterval == 0);
+        frameRequested = false;
+        ++frameCounter;
     }
 
     /**
-     * computes the line of the given index containing all the sprites of the
-     * array in either the background or foreground
+     * Computes the cycle of the first mode change after the given one that
+     * has to be simulated: the start of mode 3, when the line is drawn, the
+     * start of the VBLANK, and the mode changes raising an interrupt
      * 
-     * @param sprites
-     *            a sprite array of a maximum of 10 sprites
-     * @param lineIndex
-     *            index of the line
-     * @param background
-     *            boolean that states whether the sprite is in the background of
-     *            foreground.
-     * @return
+     * @param cycle
+     *            long, the cycle after which the event takes place
+     * @return long, the cycle of the next event
      */
-    private LcdImageLine spriteLine(int[] sprites, int lineIndex,
-            boolean background) {
-        Objects.checkIndex(lineIndex, LCD_HEIGHT);
-        LcdImageLine spriteLine = new LcdImageLine.Builder(LCD_WIDTH).build();
-        for (int i = sprites.length - 1; i >= 0; i--) {
-            if (byte3_SpriteTest(sprites[i], 7) == background) {
-                spriteLine = spriteLine
-                        .below(spriteIndividualLine(sprites[i], lineIndex));
+    private long nextEvent(long cycle) {
+        long cycleInImage = (cycle - lcdOnCycle) % DRAW_IMAGE_CYCLES;
+        int line = (int) (cycleInImage / DRAW_LINE_CYCLES);
+        int cycleInLine = (int) (cycleInImage % DRAW_LINE_CYCLES);
+        long lineStart = cycle - cycleInLine;
+        // Every visible line is drawn, so this is at most a frame's VBLANK
+        while (true) {
+            if (line < LCD_HEIGHT) {
+                if (cycleInLine < MODE_2_CYCLES)
+                    return lineStart + MODE_2_CYCLES;
+                if (cycleInLine < MODE_2_CYCLES + MODE_3_CYCLES
+                        && statInterruptEnabled(Modes.MODE_0))
+                    return lineStart + MODE_2_CYCLES + MODE_3_CYCLES;
             }
+            line = (line + 1) % LY_MAX_VALUE;
+            lineStart += DRAW_LINE_CYCLES;
+            cycleInLine = 0;
+            boolean lycInterrupt = line == reg.get(Reg.LYC)
+                    && reg.testBit(Reg.STAT, BitsSTAT.INT_LYC);
+            if (lycInterrupt || line == LCD_HEIGHT
+                    || statInterruptEnabled(
+                            line < LCD_HEIGHT ? Modes.MODE_2 : Modes.MODE_1))
+                return lineStart;
         }
-        return spriteLine;
     }
 
     /**
-     * Computes the line of the given index by combining the background image,
-     * the window and the sprites
+     * Brings LY and the mode and LYC_EQ_LY bits of STAT up to date with the
+     * current cycle, as they only change on their own
+     */
+    private void updateLY_STAT() {
+        if (nextNonIdleCycle == Long.MAX_VALUE)
+            return;
+        long cycleInImage = (currentCycle() - lcdOnCycle) % DRAW_IMAGE_CYCLES;
+        int line = (int) (cycleInImage / DRAW_LINE_CYCLES);
+        int cycleInLine = (int) (cycleInImage % DRAW_LINE_CYCLES);
+        if (line >= LCD_HEIGHT)
+            setMode(Modes.MODE_1);
+        else if (cycleInLine < MODE_2_CYCLES)
+            setMode(Modes.MODE_2);
+        else if (cycleInLine < MODE_2_CYCLES + MODE_3_CYCLES)
+            setMode(Modes.MODE_3);
+        else
+            setMode(Modes.MODE_0);
+        reg.set(Reg.LY, line);
+        reg.setBit(Reg.STAT, BitsSTAT.LYC_EQ_LY, line == reg.get(Reg.LYC));
+    }
+
+    /**
+     * Copies to OAM the bytes that the running DMA copy, if any, has copied
+     * until the given cycle included, one per cycle following its start
      * 
-     * @param index
-     *            the index of the given line
-     * @return {@link LcdImageLine} that represents the computed line
+     * @param cycle
+     *            long, the cycle
      */
-    private LcdImageLine computeLine(int index) {
-        Objects.checkIndex(index, LCD_HEIGHT);
-        int dataWindow = reg.testBit(Reg.LCDC, BitsLCDC.WIN_AREA) ? 1 : 0;
-        int data = reg.testBit(Reg.LCDC, BitsLCDC.BG_AREA) ? 1 : 0;
-        LcdImageLine bgImageLine = new LcdImageLine.Builder(LCD_WIDTH).build(),
-                windowImageLine,
-                bgSpriteLine = new LcdImageLine.Builder(LCD_WIDTH).build(),
-                fgSpriteLine = new LcdImageLine.Builder(LCD_WIDTH).build();
-        int WX_adjusted = reg.get(Reg.WX) - WX_OFFSET;
-        int[] sprites = spritesIntersectingLine(index);
-        // background
-        if (reg.testBit(Reg.LCDC, BitsLCDC.BG))
-            bgImageLine = getLcdLine((index + reg.get(Reg.SCY)), data, BG_LINES)
-                    .extractWrapped(reg.get(Reg.SCX), LCD_WIDTH)
-                    .mapColors(reg.get(Reg.BGP));
-        // window and background
-        if (!windowDisabled(WX_adjusted) && index >= reg.get(Reg.WY)) {
-            windowImageLine = getLcdLine(winY, dataWindow, FG_LINES)
-                    .shift(WX_adjusted).mapColors(reg.get(Reg.BGP));
-            winY = (winY + 1);
-            bgImageLine = bgImageLine.join(windowImageLine, WX_adjusted);
-        }
-        // sprites
-        if (reg.testBit(Reg.LCDC, BitsLCDC.OBJ)) {
-            bgSpriteLine = spriteLine(sprites, index, true);
-            fgSpriteLine = spriteLine(sprites, index, false);
-        }
-        bgImageLine = bgImageLine.below(fgSpriteLine);
-        return bgSpriteLine.below(bgImageLine,
-                bgImageLine.opacity().or(bgSpriteLine.opacity().not()));
-    }
-
-    private LcdImageLine getLcdLine(int lineIndex, int data,
-            int numberOfTiles) {
-        Preconditions.checkArgument(data == 0 || data == 1);
-        Preconditions.checkArgument(
-                numberOfTiles == FG_LINES || numberOfTiles == BG_LINES);
-        LcdImageLine.Builder builder = new LcdImageLine.Builder(
-                numberOfTiles * LINES_IN_TILE);
-        int startPoint = ((lineIndex / LINES_IN_TILE) * TILES_IN_BGLINE)
-                % (TILES_IN_BGLINE * BG_LINES);
-        int tileStartByte = (lineIndex % LINES_IN_TILE) * 2;
-        int tileSourceIndex = reg.testBit(Reg.LCDC, BitsLCDC.TILE_SOURCE) ? 1
-                : 0;
-        for (int i = 0; i < numberOfTiles; i++) {
-            int tileIndex = this
-                    .read(AddressMap.BG_DISPLAY_DATA[data] + startPoint + i);
-            tileIndex = reg.testBit(Reg.LCDC, BitsLCDC.TILE_SOURCE) ? tileIndex
-                    : Bits.clip(LINES_IN_TILE, tileIndex + 0x80);
-            int MSB = msbAddress(tileSourceIndex, tileIndex, tileStartByte);
-            int LSB = lsbAddress(tileSourceIndex, tileIndex, tileStartByte);
-            builder.setByte(i, Bits.reverse8(MSB), Bits.reverse8(LSB));
+    private void dmaCopy(long cycle) {
+        if (dmaCopied == AddressMap.OAM_RAM_SIZE)
+            return;
+        int copied = (int) Math.min(AddressMap.OAM_RAM_SIZE,
+                cycle - dmaStartCycle);
+        if (copied > dmaCopied) {
+            // The bytes are counted as copied before being read, as reading
+            // a source in OAM comes back to the controller
+            int from = dmaCopied;
+            dmaCopied = copied;
+            OAM.load(bus, dmaSource + from, from, copied - from);
+            if (worker != null) {
+                for (int i = from; i < copied; ++i)
+                    worker.OAMWritten(i, OAM.read(i));
+            } else
+                renderer.OAMWrittenAll();
         }
-        return builder.build();
     }
 
     /**
-     * @param wx
-     *            Window X-axis value
-     * @return true only if when the activation bit WIN in LCDC is 0 or when WX
-     *         is outside the range of the image width
+     * Returns the current cycle, the one of the processor when it accesses
+     * the controller between two of its cycles
+     * 
+     * @return long, the current cycle
      */
-    private boolean windowDisabled(int wx) {
-        return !(reg.testBit(Reg.LCDC, BitsLCDC.WIN)) || wx < 0
-                || wx >= LCD_WIDTH;
+    private long currentCycle() {
+        return Math.max(lastCycle, cpu.currentCycle());
     }
 
     /**
-     * Returns an array of the indexes of the sorted sprites
+     * Raises the LCD_STAT interrupt if LY becomes equal to LYC and the
+     * corresponding interrupt is enabled
      * 
-     * @param index
-     *            the index of the line
-     * @return a sorted array of the sprites that intersects with the given
-     *         line, it is sorted by their x coordinate and index
-     *
+     * @param line
+     *            the new value of LY
      */
-    private int[] spritesIntersectingLine(int index) {
-        Objects.checkIndex(index, LCD_HEIGHT);
-        int[] sprites = new int[MAX_SPRITES_LINE];
-        int spritesInLine = 0;
-        for (int i = 0; i < TOTAL_SPRITES
-                && spritesInLine < MAX_SPRITES_LINE; i++) {
-            if (index >= spriteY(i) && index < spriteY(i) + spriteSize()) {
-                sprites[spritesInLine] = Bits.make16(spriteX(i) + 8, i);
-                spritesInLine++;
-            }
-        }
-        Arrays.sort(sprites, 0, spritesInLine);
-        int[] spritesSorted = new int[spritesInLine];
-        for (int i = 0; i < spritesInLine; i++)
-            spritesSorted[i] = Bits.clip(8, sprites[i]);
-        return spritesSorted;
+    private void lycInterrupt(int line) {
+        if (line == reg.get(Reg.LYC) && reg.testBit(Reg.STAT, BitsSTAT.INT_LYC))
+            cpu.requestInterrupt(Interrupt.LCD_STAT);
+    }
+
+    /**
+     * Writes the given value in LY or LYC
+     * 
+     * @param r
+     *            the given register that can be either LY or LYC
+     * @param v
+     *            8 bit value
+     */
+    private void writeLY_LYC(Reg r, int v) {
+        Preconditions.checkBits8(v);
+        Preconditions.checkArgument(r == Reg.LY || r == Reg.LYC);
+        reg.set(r, v);
+        boolean equals = (reg.get(Reg.LY) == reg.get(Reg.LYC));
+        reg.setBit(Reg.STAT, BitsSTAT.LYC_EQ_LY, equals);
+        if (equals && reg.testBit(Reg.STAT, BitsSTAT.INT_LYC))
+            cpu.requestInterrupt(Interrupt.LCD_STAT);
+    }
+
+    /**
+     * Setting to 2 lower bits of the register STAT to match the given mode
+     * 
+     * @param mode
+     *            the {@link Modes} we want to set
+     */
+    private void setMode(Modes mode) {
+        reg.setBit(Reg.STAT, BitsSTAT.MODE0, Bits.test(mode.ordinal(), 0));
+        reg.setBit(Reg.STAT, BitsSTAT.MODE1, Bits.test(mode.ordinal(), 1));
     }
 
     /**
@@ -455,12 +587,23 @@ public final class LcdController implements Component, Clocked {
      *            the given {@link Modes}
      */
     private void lcdStatInterrupt(Modes mode) {
-
-        if (Bits.test(reg.get(Reg.STAT), BitsSTAT.values()[3 + mode.index()])
-                && mode.index() != 3)
+        if (statInterruptEnabled(mode))
             cpu.requestInterrupt(Interrupt.LCD_STAT);
     }
 
+    /**
+     * Checks whether entering the given mode raises the LCD_STAT interrupt
+     * 
+     * @param mode
+     *            the given {@link Modes}
+     * @return true only if the bit INT_MODE of {@link BitsSTAT} that
+     *         corresponds to the given mode is true
+     */
+    private boolean statInterruptEnabled(Modes mode) {
+        return mode.index() != 3 && Bits.test(reg.get(Reg.STAT),
+                BitsSTAT.values()[3 + mode.index()]);
+    }
+
     /**
      * Check whether the screen of the {@link GameBoy} is on or off
      * 
@@ -475,50 +618,4 @@ public final class LcdController implements Component, Clocked {
                 && address < AddressMap.REGS_LCDC_END);
         return Reg.values()[address - AddressMap.REGS_LCDC_START];
     }
-
-    /**
-     * 
-     * @param index
-     *            the spriteIndex
-     * @param byteIndex
-     *            the byteIndex
-     * @return the byte of the given index that corresponds the sprite f the
-     *         given index
-     * 
-     * @throws IllegalArgumentException
-     *             if the byteIndex is not in the range 0 to 5
-     */
-    private int spriteByte(int index, int byteIndex) {
-        Preconditions.checkArgument(
-                byteIndex >= 0 && byteIndex <= Integer.SIZE / Byte.SIZE);
-        return OAM.read(index * BYTES_IN_SPRITE_ATTRIBUTE + byteIndex);
-    }
-
-
-    private int lsbAddress(int tileSource, int index, int startByte) {
-        return this.read(AddressMap.TILE_SOURCE[tileSource]
-                + (TILES_IN_BGLINE / 2) * index + startByte);
-    }
-
-    private int msbAddress(int tileSource, int index, int startByte) {
-        return lsbAddress(tileSource, index, startByte + 1);
-    }
-
-    private int spriteX(int index) {
-        return spriteByte(index, 1) - X_OFFSET;
-    }
-
-    private int spriteY(int index) {
-        return spriteByte(index, 0) - Y_OFFSET;
-    }
-
-    private int spriteSize() {
-        return reg.testBit(Reg.LCDC, BitsLCDC.OBJ_SIZE) ? 16 : 8;
-    }
-
-    private boolean byte3_SpriteTest(int spriteIndex, int bit) {
-        Objects.checkIndex(bit, 8);
-        return Bits.test(spriteByte(spriteIndex, 3), bit);
-    }
-
 }
@@ -1,13 +1,11 @@
 package ch.epfl.gameboj.component.lcd;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
 import ch.epfl.gameboj.GameBoy;
 import ch.epfl.gameboj.Preconditions;
-import ch.epfl.gameboj.bits.BitVector;
 
 /**
  * CS-108 LcdImage.java
@@ -19,8 +17,14 @@ import ch.epfl.gameboj.bits.BitVector;
  */
 public final class LcdImage {
 
-    private final int height, width;
-    private final List<LcdImageLine> lineList;
+    private static final int NUMBER_OF_COLORS = 4;
+    private static final int[] IDENTITY = { 0, 1, 2, 3 };
+    private static final int NIBBLE = 4, NIBBLE_MASK = 0xF,
+            NIBBLE_GROUPS = 1 << (2 * NIBBLE);
+    private final int height, width, wordsInLine;
+    // The most significant bits, least significant bits and opacity of the
+    // pixels, packed by 32 in integers, line after line
+    private final int[] msb, lsb, opacity;
 
     /**
      * Constructs a {@link LcdImage} with the the given list of
@@ -45,7 +49,38 @@ public final class LcdImage {
             Preconditions.checkArgument(line.size() == width);
         this.height = height;
         this.width = width;
-        this.lineList = Collections.unmodifiableList(new ArrayList<>(lineList));
+        wordsInLine = width / Integer.SIZE;
+        msb = new int[height * wordsInLine];
+        lsb = new int[msb.length];
+        opacity = new int[msb.length];
+        for (int y = 0; y < height; ++y)
+            pack(lineList.get(y), y * wordsInLine, msb, lsb, opacity);
+    }
+
+    private LcdImage(int height, int width, int[] msb, int[] lsb,
+            int[] opacity) {
+        this.height = height;
+        this.width = width;
+        wordsInLine = width / Integer.SIZE;
+        this.msb = msb;
+        this.lsb = lsb;
+        this.opacity = opacity;
+    }
+
+    /**
+     * Constructs the image made of the pixels of the given buffers
+     * 
+     * @param lines
+     *            the {@link LineBuffer}s of the lines, of the same size
+     * @return {@link LcdImage}: the image of the lines
+     */
+    static LcdImage ofLines(LineBuffer[] lines) {
+        int words = lines[0].size() / Integer.SIZE;
+        int[] msb = new int[lines.length * words];
+        int[] lsb = new int[msb.length], opacity = new int[msb.length];
+        for (int y = 0; y < lines.length; ++y)
+            lines[y].copyTo(msb, lsb, opacity, y * words);
+        return new LcdImage(lines.length, lines[0].size(), msb, lsb, opacity);
     }
 
     /**
@@ -79,22 +114,105 @@ public final class LcdImage {
     public int get(int x, int y) {
         Objects.checkIndex(x, width);
         Objects.checkIndex(y, height);
-        int color = lineList.get(y).lsb().testBit(x) ? 1 : 0;
-        color |= lineList.get(y).msb().testBit(x) ? 1 << 1 : 0;
-        return color;
+        int i = y * wordsInLine + x / Integer.SIZE;
+        int bit = x % Integer.SIZE;
+        return (lsb[i] >>> bit & 1) | (msb[i] >>> bit & 1) << 1;
+    }
+
+    /**
+     * Stores the colours of all the pixels of the image in the given array,
+     * line after line, the colour of the pixel (x, y) being at the index
+     * y * width + x
+     * 
+     * @param colors
+     *            integer array, of at least width * height elements, in which
+     *            the colours between 0 and 3 are stored
+     * @throws IndexOutOfBoundsException
+     *             if the array is too small
+     */
+    public void getColors(int[] colors) {
+        getColors(colors, IDENTITY);
+    }
+
+    /**
+     * Stores the colours of all the pixels of the image in the given array,
+     * line after line, once transformed by the given map of the four colours,
+     * like the colours of the screen: the colour of the pixel (x, y) being at
+     * the index y * width + x
+     * 
+     * @param colors
+     *            integer array, of at least width * height elements, in which
+     *            the transformed colours are stored
+     * @param colorMap
+     *            integer array, of 4 elements, giving the transformed value of
+     *            each colour between 0 and 3
+     * @throws IndexOutOfBoundsException
+     *             if the array is too small
+     * @throws IllegalArgumentException
+     *             if the map does not have 4 elements
+     */
+    public void getColors(int[] colors, int[] colorMap) {
+        Objects.checkFromIndexSize(0, width * height, colors.length);
+        Preconditions.checkArgument(colorMap.length == NUMBER_OF_COLORS);
+        // The transformed colours of every group of 4 pixels, given by the 4
+        // msb then the 4 lsb of the pixels, so that the pixels are expanded
+        // by 4 with a single lookup instead of one bit at a time
+        int[] groups = new int[NIBBLE_GROUPS * NIBBLE];
+        for (int g = 0; g < NIBBLE_GROUPS; ++g) {
+            for (int k = 0; k < NIBBLE; ++k) {
+                int color = (g >>> k & 1) | (g >>> (NIBBLE + k) & 1) << 1;
+                groups[g * NIBBLE + k] = colorMap[color];
+            }
+        }
+        for (int i = 0, p = 0; i < msb.length; ++i) {
+            int m = msb[i], l = lsb[i];
+            for (int bit = 0; bit < Integer.SIZE; bit += NIBBLE, p += NIBBLE) {
+                int g = ((m >>> bit & NIBBLE_MASK) << NIBBLE
+                        | l >>> bit & NIBBLE_MASK) * NIBBLE;
+                colors[p] = groups[g];
+                colors[p + 1] = groups[g + 1];
+                colors[p + 2] = groups[g + 2];
+                colors[p + 3] = groups[g + 3];
+            }
+        }
     }
 
     @Override
     public boolean equals(Object arg0) {
-        return (arg0 instanceof LcdImage)
-                && (this.height == ((LcdImage) arg0).height)
-                && (this.width == ((LcdImage) arg0).width)
-                && this.lineList.equals(((LcdImage) arg0).lineList);
+        if (!(arg0 instanceof LcdImage))
+            return false;
+        LcdImage that = (LcdImage) arg0;
+        return height == that.height && width == that.width
+                && Arrays.equals(msb, that.msb) && Arrays.equals(lsb, that.lsb)
+                && Arrays.equals(opacity, that.opacity);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(lineList);
+        return Objects.hash(height, width, Arrays.hashCode(msb),
+                Arrays.hashCode(lsb), Arrays.hashCode(opacity));
+    }
+
+    /**
+     * Packs the bits of the given line in the given arrays from the given
+     * index
+     * 
+     * @param line
+     *            {@link LcdImageLine}: the line to be packed
+     * @param index
+     *            integer: the index of its first integer in the arrays
+     */
+    private static void pack(LcdImageLine line, int index, int[] msb,
+            int[] lsb, int[] opacity) {
+        for (int x = 0; x < line.size(); ++x) {
+            int i = index + x / Integer.SIZE, bit = 1 << (x % Integer.SIZE);
+            if (line.msb().testBit(x))
+                msb[i] |= bit;
+            if (line.lsb().testBit(x))
+                lsb[i] |= bit;
+            if (line.opacity().testBit(x))
+                opacity[i] |= bit;
+        }
     }
 
     /**
@@ -103,20 +221,20 @@ public final class LcdImage {
      */
     public static final class Builder {
         private final int height, width;
-        private final List<LcdImageLine> lineList;
+        private final int[] msb, lsb, opacity;
 
         /**Constructs the {@link LcdImage} Builder
          * @param height
          * @param width
          */
         public Builder(int height, int width) {
-            lineList = new ArrayList<>(height);
+            Preconditions.checkArgument(height > 0 && width > 0
+                    && width % Integer.SIZE == 0);
             this.height = height;
             this.width = width;
-            lineList.addAll(Collections.nCopies(height,
-                    new LcdImageLine(new BitVector(width), new BitVector(width),
-                            new BitVector(width))));
-
+            msb = new int[height * width / Integer.SIZE];
+            lsb = new int[msb.length];
+            opacity = new int[msb.length];
         }
 
         /**
@@ -144,7 +262,11 @@ public final class LcdImage {
             Objects.requireNonNull(line);
             Objects.checkIndex(index, height);
             Preconditions.checkArgument(line.size() == width);
-            lineList.set(index, line);
+            int start = index * width / Integer.SIZE;
+            Arrays.fill(msb, start, start + width / Integer.SIZE, 0);
+            Arrays.fill(lsb, start, start + width / Integer.SIZE, 0);
+            Arrays.fill(opacity, start, start + width / Integer.SIZE, 0);
+            pack(line, start, msb, lsb, opacity);
             return this;
         }
 
@@ -154,7 +276,8 @@ public final class LcdImage {
          * @return {@link LcdImage}: the build image
          */
         public LcdImage build() {
-            return new LcdImage(height, width, lineList);
+            return new LcdImage(height, width, msb.clone(), lsb.clone(),
+                    opacity.clone());
         }
     }
 }
@@ -140,17 +140,20 @@ public final class LcdImageLine {
         if (palette == SAME_PALETTE)
             return this;
         else {
-            BitVector newLsb = new BitVector(size());
-            BitVector newMsb = new BitVector(size());
-            BitVector mask;
+            // The pixels of colour i are those of bits lsbs[i & 1] and
+            // msbs[i >> 1]
+            BitVector[] lsbs = { lsb.not(), lsb }, msbs = { msb.not(), msb };
+            BitVector.Mutable newLsb = new BitVector.Mutable(size);
+            BitVector.Mutable newMsb = new BitVector.Mutable(size);
             for (int i = 0; i < NUMBER_OF_COLORS; i++) {
-                mask = Bits.test(i, 0) ? lsb : lsb.not();
-                mask = Bits.test(i, 1) ? mask.and(msb) : mask.and(msb.not());
-                newLsb = Bits.test(palette, i * 2) ? newLsb.or(mask) : newLsb;
-                newMsb = Bits.test(palette, i * 2 + 1) ? newMsb.or(mask)
-                        : newMsb;
+                BitVector l = lsbs[i & 1], m = msbs[i >> 1];
+                if (Bits.test(palette, i * 2))
+                    newLsb.orAnd(l, m);
+                if (Bits.test(palette, i * 2 + 1))
+                    newMsb.orAnd(l, m);
             }
-            return new LcdImageLine(newMsb, newLsb, opacity);
+            return new LcdImageLine(newMsb.toBitVector(),
+                    newLsb.toBitVector(), opacity);
         }
     }
 
@@ -185,10 +188,10 @@ public final class LcdImageLine {
      */
     public LcdImageLine below(LcdImageLine aboveLine, BitVector opacity) {
         Preconditions.checkArgument(this.size() == aboveLine.size());
-        BitVector newLsb = opacity.and(aboveLine.lsb)
-                .or(opacity.not().and(lsb));
-        BitVector newMsb = opacity.and(aboveLine.msb)
-                .or(opacity.not().and(msb));
+        BitVector newLsb = new BitVector.Mutable(lsb)
+                .blend(aboveLine.lsb, opacity).toBitVector();
+        BitVector newMsb = new BitVector.Mutable(msb)
+                .blend(aboveLine.msb, opacity).toBitVector();
         return new LcdImageLine(newMsb, newLsb, opacity.or(this.opacity));
     }
 
@@ -209,12 +212,14 @@ public final class LcdImageLine {
     public LcdImageLine join(LcdImageLine secondLine, int n) {
         Objects.requireNonNull(secondLine);
         Preconditions.checkArgument(this.size() == secondLine.size());
-        BitVector mask = new BitVector(size, true);
-        mask = mask.shift(n).not();
-        BitVector newLsb = (mask.and(lsb)).or(mask.not().and(secondLine.lsb));
-        BitVector newMsb = mask.and(msb).or(mask.not().and(secondLine.msb));
-        BitVector newOpacity = mask.and(this.opacity)
-                .or(mask.not().and(secondLine.opacity));
+        // The pixels taken from the second line
+        BitVector mask = new BitVector(size, true).shift(n);
+        BitVector newLsb = new BitVector.Mutable(lsb)
+                .blend(secondLine.lsb, mask).toBitVector();
+        BitVector newMsb = new BitVector.Mutable(msb)
+                .blend(secondLine.msb, mask).toBitVector();
+        BitVector newOpacity = new BitVector.Mutable(opacity)
+                .blend(secondLine.opacity, mask).toBitVector();
         return new LcdImageLine(newMsb, newLsb, newOpacity);
     }
 
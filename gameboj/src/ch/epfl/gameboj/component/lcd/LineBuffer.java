@@ -0,0 +1,334 @@
+package ch.epfl.gameboj.component.lcd;
+
+import java.util.Arrays;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.bits.BitVector;
+import ch.epfl.gameboj.bits.Bits;
+
+/**
+ * CS-108
+ * LineBuffer.java
+ * Purpose: Representing a mutable line of pixels, stored like an
+ * {@link LcdImageLine} as three planes of bits packed in integers, whose
+ * operations modify the line in place so that the buffer can be reused to
+ * draw every line without allocating memory
+ *
+ * @author Sara Djambazovska
+ * @author Marouane Jaakik
+ *
+ */
+final class LineBuffer {
+
+    private static final int SAME_PALETTE = 0b11100100;
+    private static final int NUMBER_OF_COLORS = 4;
+    private static final int LSB_MASKS = 0, MSB_MASKS = NUMBER_OF_COLORS;
+    private static final int[][] PALETTE_MASKS = newPaletteMasks();
+    private final int[] msb, lsb, opacity;
+
+    /**
+     * Constructs a transparent line of the given size
+     *
+     * @param size
+     *            integer, the number of pixels, a positive multiple of 32
+     * @throws IllegalArgumentException
+     *             if the size is not a positive multiple of 32
+     */
+    LineBuffer(int size) {
+        Preconditions.checkArgument(size > 0 && size % Integer.SIZE == 0);
+        msb = new int[size / Integer.SIZE];
+        lsb = new int[msb.length];
+        opacity = new int[msb.length];
+    }
+
+    /**
+     * Returns the size of the line in pixels
+     *
+     * @return integer: number of pixels in the line
+     */
+    int size() {
+        return msb.length * Integer.SIZE;
+    }
+
+    /**
+     * Makes every pixel of the line transparent, of colour 0
+     */
+    void clear() {
+        Arrays.fill(msb, 0);
+        Arrays.fill(lsb, 0);
+        Arrays.fill(opacity, 0);
+    }
+
+    /**
+     * Sets the byte of pixels of the given index, the pixels of colour 0
+     * being transparent, as {@link LcdImageLine.Builder#setByte} does
+     *
+     * @param index
+     *            integer: the position of the byte to be set
+     * @param msbByte
+     *            integer: 8 bits, the most significant bits of the pixels
+     * @param lsbByte
+     *            integer: 8 bits, the least significant bits of the pixels
+     */
+    void setByte(int index, int msbByte, int lsbByte) {
+        int i = index / Integer.BYTES;
+        int shift = (index % Integer.BYTES) * Byte.SIZE;
+        int mask = ~(0xFF << shift);
+        msb[i] = msb[i] & mask | msbByte << shift;
+        lsb[i] = lsb[i] & mask | lsbByte << shift;
+        opacity[i] = opacity[i] & mask | (msbByte | lsbByte) << shift;
+    }
+
+    /**
+     * Draws 8 pixels starting at the given one over the line, only where
+     * the given mask is set, as {@link LcdImageLine#below} would draw a line
+     * containing only them; the pixels outside the line are ignored
+     *
+     * @param pixel
+     *            integer: the index of the first pixel, possibly negative
+     * @param msbByte
+     *            integer: 8 bits, the most significant bits of the pixels
+     * @param lsbByte
+     *            integer: 8 bits, the least significant bits of the pixels
+     * @param mask
+     *            integer: 8 bits, the opaque pixels to draw
+     */
+    void draw8(int pixel, int msbByte, int lsbByte, int mask) {
+        int i = Math.floorDiv(pixel, Integer.SIZE);
+        int shift = Math.floorMod(pixel, Integer.SIZE);
+        long m = Integer.toUnsignedLong(mask) << shift;
+        long h = Integer.toUnsignedLong(msbByte) << shift;
+        long l = Integer.toUnsignedLong(lsbByte) << shift;
+        for (int j = 0; j < 2; ++j, ++i) {
+            if (i < 0 || i >= msb.length)
+                continue;
+            int wm = (int) (m >>> (j * Integer.SIZE));
+            msb[i] = msb[i] & ~wm | (int) (h >>> (j * Integer.SIZE)) & wm;
+            lsb[i] = lsb[i] & ~wm | (int) (l >>> (j * Integer.SIZE)) & wm;
+            opacity[i] |= wm;
+        }
+    }
+
+    /**
+     * Transforms the colours of the line according to the given palette,
+     * keeping its opacity
+     *
+     * @param palette
+     *            integer: 8 bits the transformation palette
+     * @see LcdImageLine#mapColors(int)
+     */
+    void mapColors(int palette) {
+        if (palette == SAME_PALETTE)
+            return;
+        int[] masks = PALETTE_MASKS[palette];
+        for (int i = 0; i < msb.length; ++i) {
+            int h = msb[i], l = lsb[i];
+            msb[i] = mapPlane(h, l, masks, MSB_MASKS);
+            lsb[i] = mapPlane(h, l, masks, LSB_MASKS);
+        }
+    }
+
+    /**
+     * Transforms the colours of 32 pixels according to the given palette
+     *
+     * @param msb
+     *            integer: the most significant bits of the pixels
+     * @param lsb
+     *            integer: the least significant bits of the pixels
+     * @param palette
+     *            integer: 8 bits the transformation palette
+     * @return long: the new most significant bits in the upper half and the
+     *         new least significant bits in the lower half
+     */
+    static long mapColors(int msb, int lsb, int palette) {
+        int[] masks = PALETTE_MASKS[palette];
+        int newMsb = mapPlane(msb, lsb, masks, MSB_MASKS);
+        int newLsb = mapPlane(msb, lsb, masks, LSB_MASKS);
+        return (long) newMsb << Integer.SIZE | Integer.toUnsignedLong(newLsb);
+    }
+
+    // A plane of the colours given by a palette is a function of the two
+    // planes of the pixels, given by the bit of the plane for each of the
+    // four colours, stored for each palette as masks of 32 equal bits: those
+    // of the lsb then those of the msb
+    private static int[][] newPaletteMasks() {
+        int[][] masks = new int[1 << Byte.SIZE][2 * NUMBER_OF_COLORS];
+        for (int p = 0; p < masks.length; ++p) {
+            for (int c = 0; c < NUMBER_OF_COLORS; ++c) {
+                masks[p][LSB_MASKS + c] = Bits.test(p, c * 2) ? -1 : 0;
+                masks[p][MSB_MASKS + c] = Bits.test(p, c * 2 + 1) ? -1 : 0;
+            }
+        }
+        return masks;
+    }
+
+    // Selects the mask of the colour of each pixel, with the lsb then with
+    // the msb, without branching
+    private static int mapPlane(int msb, int lsb, int[] masks, int plane) {
+        int c0 = masks[plane], c1 = masks[plane + 1],
+                c2 = masks[plane + 2], c3 = masks[plane + 3];
+        int low = c0 ^ (c0 ^ c1) & lsb, high = c2 ^ (c2 ^ c3) & lsb;
+        return low ^ (low ^ high) & msb;
+    }
+
+    /**
+     * Replaces the line by the wrapped extraction of the given line starting
+     * at the given pixel
+     *
+     * @param source
+     *            {@link LineBuffer}: the line to extract from, different from
+     *            this one
+     * @param pixel
+     *            integer: starting pixel for the extraction
+     * @see LcdImageLine#extractWrapped(int, int)
+     */
+    void extractWrapped(LineBuffer source, int pixel) {
+        int n = source.msb.length;
+        int div = Math.floorDiv(pixel, Integer.SIZE);
+        int mod = Math.floorMod(pixel, Integer.SIZE);
+        for (int i = 0; i < msb.length; ++i) {
+            int w0 = Math.floorMod(div + i, n);
+            int w1 = Math.floorMod(div + i + 1, n);
+            msb[i] = extract(source.msb, w0, w1, mod);
+            lsb[i] = extract(source.lsb, w0, w1, mod);
+            opacity[i] = extract(source.opacity, w0, w1, mod);
+        }
+    }
+
+    /**
+     * Shifts the line by the given number of pixels, towards the end of the
+     * line if it is positive, the pixels shifted in being transparent
+     *
+     * @param distance
+     *            integer: amount of pixels to be shifted
+     * @see LcdImageLine#shift(int)
+     */
+    void shift(int distance) {
+        int div = Math.floorDiv(-distance, Integer.SIZE);
+        int mod = Math.floorMod(-distance, Integer.SIZE);
+        // Each integer only depends on the ones it is shifted from
+        if (distance >= 0) {
+            for (int i = msb.length - 1; i >= 0; --i)
+                shiftWord(i, div, mod);
+        } else {
+            for (int i = 0; i < msb.length; ++i)
+                shiftWord(i, div, mod);
+        }
+    }
+
+    /**
+     * Keeps the given number of pixels at the start of the line, and replaces
+     * the others by those of the given line
+     *
+     * @param other
+     *            {@link LineBuffer}: the line giving the end of the line
+     * @param n
+     *            integer: the number of pixels kept
+     * @see LcdImageLine#join(LcdImageLine, int)
+     */
+    void join(LineBuffer other, int n) {
+        Preconditions.checkArgument(other.size() == size());
+        for (int i = 0; i < msb.length; ++i) {
+            int kept = n - i * Integer.SIZE;
+            int mask = kept >= Integer.SIZE ? -1
+                    : kept <= 0 ? 0 : (1 << kept) - 1;
+            msb[i] = msb[i] & mask | other.msb[i] & ~mask;
+            lsb[i] = lsb[i] & mask | other.lsb[i] & ~mask;
+            opacity[i] = opacity[i] & mask | other.opacity[i] & ~mask;
+        }
+    }
+
+    /**
+     * Draws the opaque pixels of the given line over this one
+     *
+     * @param above
+     *            {@link LineBuffer}: the line drawn above
+     * @see LcdImageLine#below(LcdImageLine)
+     */
+    void below(LineBuffer above) {
+        Preconditions.checkArgument(above.size() == size());
+        for (int i = 0; i < msb.length; ++i) {
+            int o = above.opacity[i];
+            msb[i] = msb[i] & ~o | above.msb[i] & o;
+            lsb[i] = lsb[i] & ~o | above.lsb[i] & o;
+            opacity[i] |= o;
+        }
+    }
+
+    /**
+     * Draws the given line below this one, where this one is transparent
+     * and the given one is opaque, like the sprites drawn behind the
+     * background
+     *
+     * @param behind
+     *            {@link LineBuffer}: the line drawn behind
+     * @see LcdImageLine#below(LcdImageLine, BitVector)
+     */
+    void above(LineBuffer behind) {
+        Preconditions.checkArgument(behind.size() == size());
+        for (int i = 0; i < msb.length; ++i) {
+            int o = opacity[i] | ~behind.opacity[i];
+            msb[i] = msb[i] & o | behind.msb[i] & ~o;
+            lsb[i] = lsb[i] & o | behind.lsb[i] & ~o;
+            opacity[i] = o | behind.opacity[i];
+        }
+    }
+
+    /**
+     * Copies the planes of bits of the line into the given arrays, from the
+     * given index
+     *
+     * @param msb
+     *            integer array receiving the most significant bits
+     * @param lsb
+     *            integer array receiving the least significant bits
+     * @param opacity
+     *            integer array receiving the opacity
+     * @param index
+     *            integer, the index of the first integer copied in the arrays
+     */
+    void copyTo(int[] msb, int[] lsb, int[] opacity, int index) {
+        System.arraycopy(this.msb, 0, msb, index, this.msb.length);
+        System.arraycopy(this.lsb, 0, lsb, index, this.lsb.length);
+        System.arraycopy(this.opacity, 0, opacity, index,
+                this.opacity.length);
+    }
+
+    /**
+     * Builds the immutable line of the pixels of the buffer
+     *
+     * @return {@link LcdImageLine}: the line
+     */
+    LcdImageLine toLine() {
+        return new LcdImageLine(toBitVector(msb), toBitVector(lsb),
+                toBitVector(opacity));
+    }
+
+    private static BitVector toBitVector(int[] plane) {
+        BitVector.Builder builder = new BitVector.Builder(
+                plane.length * Integer.SIZE);
+        for (int i = 0; i < plane.length * Integer.BYTES; ++i)
+            builder.setByte(i, Bits.extract(plane[i / Integer.BYTES],
+                    (i % Integer.BYTES) * Byte.SIZE, Byte.SIZE));
+        return builder.build();
+    }
+
+    private static int extract(int[] plane, int w0, int w1, int mod) {
+        return mod == 0 ? plane[w0]
+                : plane[w0] >>> mod | plane[w1] << (Integer.SIZE - mod);
+    }
+
+    private void shiftWord(int i, int div, int mod) {
+        msb[i] = shifted(msb, i + div, mod);
+        lsb[i] = shifted(lsb, i + div, mod);
+        opacity[i] = shifted(opacity, i + div, mod);
+    }
+
+    private static int shifted(int[] plane, int i, int mod) {
+        int low = i >= 0 && i < plane.length ? plane[i] : 0;
+        if (mod == 0)
+            return low;
+        int high = i + 1 >= 0 && i + 1 < plane.length ? plane[i + 1] : 0;
+        return low >>> mod | high << (Integer.SIZE - mod);
+    }
+}
@@ -0,0 +1,306 @@
+package ch.epfl.gameboj.component.lcd;
+
+import java.util.Objects;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.lcd.LcdController.BitsLCDC;
+import ch.epfl.gameboj.component.memory.Ram;
+
+/**
+ * CS-108
+ * LineRenderer.java
+ * Purpose: Drawing the lines of the screen from the video memory and the
+ * object attribute memory it is given, and from the registers of the
+ * {@link LcdController} read at the start of the drawing of each line, so
+ * that the lines can be drawn away from the controller
+ *
+ * @author Sara Djambazovska
+ * @author Marouane Jaakik
+ *
+ */
+final class LineRenderer {
+
+    // The indexes of the registers read to draw a line, packed by bytes in a
+    // long: the inputs of the line
+    static final int LCDC = 0, SCY = 1, SCX = 2, WY = 3, WX = 4, BGP = 5,
+            OBP0 = 6, OBP1 = 7;
+    static final int INPUTS = 8;
+
+    private static final int LINES_IN_TILE = 8;
+    private static final int TILES_IN_BGLINE = 32;
+    private static final int BG_LINES = 32;
+    private static final int FG_LINES = 20;
+    private static final int WX_OFFSET = 7;
+    private static final int X_OFFSET = 8;
+    private static final int Y_OFFSET = 16;
+    private static final int BYTES_IN_SPRITE_ATTRIBUTE = 4;
+    private final Ram OAM, videoRam;
+    private final TileCache tiles;
+    private final SpriteIndex spriteIndex;
+    // Buffers reused to draw each line
+    private final LineBuffer bgLine = new LineBuffer(BG_LINES * LINES_IN_TILE),
+            windowLine = new LineBuffer(LcdController.LCD_WIDTH),
+            bgSpriteLine = new LineBuffer(LcdController.LCD_WIDTH),
+            fgSpriteLine = new LineBuffer(LcdController.LCD_WIDTH);
+
+    /**
+     * Constructs the renderer of the lines of the given memories, whose
+     * writes must then be signalled to the renderer
+     *
+     * @param videoRam
+     *            {@link Ram}, the video memory
+     * @param OAM
+     *            {@link Ram}, the object attribute memory
+     */
+    LineRenderer(Ram videoRam, Ram OAM) {
+        this.videoRam = videoRam;
+        this.OAM = OAM;
+        tiles = new TileCache(videoRam);
+        spriteIndex = new SpriteIndex(OAM, LcdController.LCD_HEIGHT);
+    }
+
+    /**
+     * Returns the given register of the given inputs of a line
+     *
+     * @param inputs
+     *            long, the registers read to draw the line
+     * @param register
+     *            integer, the index of the register
+     * @return integer, the 8 bits of the register
+     */
+    static int input(long inputs, int register) {
+        return Bits.clip(Byte.SIZE, (int) (inputs >>> register * Byte.SIZE));
+    }
+
+    /**
+     * @param inputs
+     *            long, the registers read to draw the line
+     * @param index
+     *            the index of the line
+     * @return true only if the window is drawn on the given line, which then
+     *         increments its line counter
+     */
+    static boolean windowDrawn(long inputs, int index) {
+        int wx = input(inputs, WX) - WX_OFFSET;
+        return Bits.test(input(inputs, LCDC), BitsLCDC.WIN) && wx >= 0
+                && wx < LcdController.LCD_WIDTH && index >= input(inputs, WY);
+    }
+
+    /**
+     * Signals a write to the video memory at the given address
+     *
+     * @param address
+     *            integer, the address of the video memory written
+     */
+    void videoRamWritten(int address) {
+        tiles.written(address);
+    }
+
+    /**
+     * Signals a write to the object attribute memory at the given index
+     *
+     * @param index
+     *            integer, the index of the byte written in the memory
+     */
+    void OAMWritten(int index) {
+        spriteIndex.written(index);
+    }
+
+    /**
+     * Signals a write to the whole object attribute memory
+     */
+    void OAMWrittenAll() {
+        spriteIndex.writtenAll();
+    }
+
+    /**
+     * Returns the number of rows of tiles drawn that were already decoded
+     *
+     * @return long, the number of hits of the cache of decoded tiles
+     */
+    long tileCacheHits() {
+        return tiles.hits();
+    }
+
+    /**
+     * Returns the number of rows of tiles drawn that had to be decoded
+     *
+     * @return long, the number of misses of the cache of decoded tiles
+     */
+    long tileCacheMisses() {
+        return tiles.misses();
+    }
+
+    /**
+     * Draws the line of the given index by combining the background image,
+     * the window and the sprites
+     *
+     * @param index
+     *            the index of the given line
+     * @param inputs
+     *            long, the registers read to draw the line
+     * @param winY
+     *            the index of the line of the window drawn, if any
+     * @param line
+     *            the {@link LineBuffer} in which the line is drawn
+     */
+    void draw(int index, long inputs, int winY, LineBuffer line) {
+        Objects.checkIndex(index, LcdController.LCD_HEIGHT);
+        int lcdc = input(inputs, LCDC);
+        int dataWindow = Bits.test(lcdc, BitsLCDC.WIN_AREA) ? 1 : 0;
+        int data = Bits.test(lcdc, BitsLCDC.BG_AREA) ? 1 : 0;
+        int tileSource = Bits.test(lcdc, BitsLCDC.TILE_SOURCE) ? 1 : 0;
+        int WX_adjusted = input(inputs, WX) - WX_OFFSET;
+        // background
+        if (Bits.test(lcdc, BitsLCDC.BG)) {
+            drawTiles(bgLine, index + input(inputs, SCY), data, tileSource,
+                    BG_LINES);
+            line.extractWrapped(bgLine, input(inputs, SCX));
+            line.mapColors(input(inputs, BGP));
+        } else {
+            line.clear();
+        }
+        // window and background
+        if (windowDrawn(inputs, index)) {
+            drawTiles(windowLine, winY, dataWindow, tileSource, FG_LINES);
+            windowLine.shift(WX_adjusted);
+            windowLine.mapColors(input(inputs, BGP));
+            line.join(windowLine, WX_adjusted);
+        }
+        // sprites
+        if (Bits.test(lcdc, BitsLCDC.OBJ)) {
+            int spriteSize = Bits.test(lcdc, BitsLCDC.OBJ_SIZE) ? 16 : 8;
+            spriteIndex.setSpriteSize(spriteSize);
+            int[] sprites = spriteIndex.sprites(index);
+            int count = spriteIndex.count(index);
+            drawSprites(sprites, count, index, inputs, spriteSize, true,
+                    bgSpriteLine);
+            drawSprites(sprites, count, index, inputs, spriteSize, false,
+                    fgSpriteLine);
+        } else {
+            bgSpriteLine.clear();
+            fgSpriteLine.clear();
+        }
+        line.below(fgSpriteLine);
+        line.above(bgSpriteLine);
+    }
+
+    /**
+     * Draws the sprites of the given line that are either behind or in front
+     * of the background on the given line, the sprites with the lowest x
+     * coordinate and index being drawn above the others
+     *
+     * @param sprites
+     *            the indexes of the sprites of the line, sorted
+     * @param count
+     *            the number of sprites of the line
+     * @param lineIndex
+     *            index of the line
+     * @param inputs
+     *            long, the registers read to draw the line
+     * @param spriteSize
+     *            the height of the sprites, 8 or 16
+     * @param background
+     *            boolean that states whether the sprites are in the background
+     *            or foreground.
+     * @param line
+     *            the {@link LineBuffer} in which the sprites are drawn
+     */
+    private void drawSprites(int[] sprites, int count, int lineIndex,
+            long inputs, int spriteSize, boolean background,
+            LineBuffer line) {
+        line.clear();
+        for (int i = count - 1; i >= 0; i--) {
+            int sprite = sprites[i];
+            if (byte3_SpriteTest(sprite, 7) != background)
+                continue;
+            boolean hFlip = byte3_SpriteTest(sprite, 5),
+                    vFlip = byte3_SpriteTest(sprite, 6);
+            int row = vFlip ? spriteSize - 1 - lineIndex + spriteY(sprite)
+                    : lineIndex - spriteY(sprite);
+            int tileIndex = spriteByte(sprite, 2);
+            int pixels = tiles.row(tileAddress(1, tileIndex, row * 2), hFlip);
+            int msb = Bits.extract(pixels, Byte.SIZE, Byte.SIZE);
+            int lsb = Bits.clip(Byte.SIZE, pixels);
+            int palette = byte3_SpriteTest(sprite, 4) ? input(inputs, OBP1)
+                    : input(inputs, OBP0);
+            long colors = LineBuffer.mapColors(msb, lsb, palette);
+            line.draw8(spriteX(sprite), (int) (colors >>> Integer.SIZE),
+                    (int) colors, msb | lsb);
+        }
+    }
+
+    /**
+     * Draws in the given buffer the given number of tiles of the given line
+     * of the background or of the window
+     *
+     * @param line
+     *            the {@link LineBuffer} in which the tiles are drawn
+     * @param lineIndex
+     *            the index of the line in the background or window
+     * @param data
+     *            the index of the tile map, 0 or 1
+     * @param tileSourceIndex
+     *            the index of the source of the tiles, 0 or 1
+     * @param numberOfTiles
+     *            the number of tiles of the line
+     */
+    private void drawTiles(LineBuffer line, int lineIndex, int data,
+            int tileSourceIndex, int numberOfTiles) {
+        Preconditions.checkArgument(data == 0 || data == 1);
+        Preconditions.checkArgument(
+                numberOfTiles == FG_LINES || numberOfTiles == BG_LINES);
+        int startPoint = ((lineIndex / LINES_IN_TILE) * TILES_IN_BGLINE)
+                % (TILES_IN_BGLINE * BG_LINES);
+        int tileStartByte = (lineIndex % LINES_IN_TILE) * 2;
+        for (int i = 0; i < numberOfTiles; i++) {
+            int tileIndex = videoRam.read(AddressMap.BG_DISPLAY_DATA[data]
+                    + startPoint + i - AddressMap.VIDEO_RAM_START);
+            tileIndex = tileSourceIndex == 1 ? tileIndex
+                    : Bits.clip(LINES_IN_TILE, tileIndex + 0x80);
+            int pixels = tiles.row(
+                    tileAddress(tileSourceIndex, tileIndex, tileStartByte),
+                    false);
+            line.setByte(i, Bits.extract(pixels, Byte.SIZE, Byte.SIZE),
+                    Bits.clip(Byte.SIZE, pixels));
+        }
+    }
+
+    /**
+     *
+     * @param index
+     *            the spriteIndex
+     * @param byteIndex
+     *            the byteIndex
+     * @return the byte of the given index that corresponds the sprite f the
+     *         given index
+     *
+     * @throws IllegalArgumentException
+     *             if the byteIndex is not in the range 0 to 5
+     */
+    private int spriteByte(int index, int byteIndex) {
+        Preconditions.checkArgument(
+                byteIndex >= 0 && byteIndex <= Integer.SIZE / Byte.SIZE);
+        return OAM.read(index * BYTES_IN_SPRITE_ATTRIBUTE + byteIndex);
+    }
+
+    private int tileAddress(int tileSource, int index, int startByte) {
+        return AddressMap.TILE_SOURCE[tileSource]
+                + (TILES_IN_BGLINE / 2) * index + startByte;
+    }
+
+    private int spriteX(int index) {
+        return spriteByte(index, 1) - X_OFFSET;
+    }
+
+    private int spriteY(int index) {
+        return spriteByte(index, 0) - Y_OFFSET;
+    }
+
+    private boolean byte3_SpriteTest(int spriteIndex, int bit) {
+        Objects.checkIndex(bit, 8);
+        return Bits.test(spriteByte(spriteIndex, 3), bit);
+    }
+}
@@ -0,0 +1,281 @@
+package ch.epfl.gameboj.component.lcd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.component.memory.Ram;
+
+/**
+ * CS-108
+ * RenderWorker.java
+ * Purpose: Drawing the frames of an {@link LcdController} on a thread of its
+ * own: the controller only records the inputs of each line when it would
+ * draw it and logs the writes to the video memory and to the object
+ * attribute memory, and the frame is drawn by the thread once it is
+ * complete, replaying the writes logged before each line on memories of its
+ * own
+ *
+ * @author Sara Djambazovska
+ * @author Marouane Jaakik
+ *
+ */
+final class RenderWorker {
+
+    private static final long KEEP_ALIVE_SECONDS = 1;
+    private static final int LCD_HEIGHT = LcdController.LCD_HEIGHT;
+    // The writes to the object attribute memory are logged at their index
+    // plus this offset, after the indices of the video memory
+    private static final int OAM_WRITES = AddressMap.VIDEO_RAM_SIZE;
+    // The number of writes logged before the first line of a frame beyond
+    // which copying the memories is cheaper than logging the writes
+    private static final int MAX_WRITES = AddressMap.VIDEO_RAM_SIZE
+            + AddressMap.OAM_RAM_SIZE;
+    private static final int INITIAL_WRITES = 64;
+
+    private final ThreadPoolExecutor executor;
+
+    // Used by the thread of the controller only
+    private final Ram liveVideoRam, liveOAM;
+    private Frame frame = new Frame();
+    private Frame lastFrame;
+    private Future<LcdImage> lastImage;
+
+    // Used by the thread drawing the frames only: its own memories, on which
+    // the writes logged are replayed
+    private final Ram videoRam = new Ram(AddressMap.VIDEO_RAM_SIZE),
+            OAM = new Ram(AddressMap.OAM_RAM_SIZE);
+    private final LineRenderer renderer = new LineRenderer(videoRam, OAM);
+    private final LineBuffer[] lines = new LineBuffer[LCD_HEIGHT];
+
+    /**
+     * The records of the lines of a frame and the writes to the memories
+     * since the previous frame given to the thread, which are not modified
+     * once the frame has been given to it
+     */
+    private static final class Frame {
+        private final long[] inputs = new long[LCD_HEIGHT];
+        private final int[] winY = new int[LCD_HEIGHT];
+        // The number of writes logged when each line was recorded
+        private final int[] writesBefore = new int[LCD_HEIGHT];
+        // The index of each byte written, with its value in the 8 low bits
+        private int[] writes = new int[INITIAL_WRITES];
+        private int writeCount = 0;
+        // True if lines were recorded since the screen was turned on
+        private boolean recording = false;
+        // The copies of the memories, taken instead of logging the writes
+        // since the previous frame when they were too many, or null
+        private Ram videoRam, OAM;
+        // The previous frame, dropped before being drawn, whose writes must
+        // be replayed first, or null
+        private Frame dropped;
+    }
+
+    /**
+     * Constructs the worker drawing the frames of the given memories, whose
+     * writes must then be signalled to the worker. Its thread only runs
+     * while there are frames to draw
+     *
+     * @param videoRam
+     *            {@link Ram}, the video memory of the controller
+     * @param OAM
+     *            {@link Ram}, the object attribute memory of the controller
+     */
+    RenderWorker(Ram videoRam, Ram OAM) {
+        liveVideoRam = videoRam;
+        liveOAM = OAM;
+        for (int y = 0; y < LCD_HEIGHT; ++y)
+            lines[y] = new LineBuffer(LcdController.LCD_WIDTH);
+        executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "LcdController renderer");
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Signals a write to the video memory of the controller
+     *
+     * @param index
+     *            the index of the byte written in the memory
+     * @param data
+     *            the value of 8 bits written
+     */
+    void videoRamWritten(int index, int data) {
+        log(index, data);
+    }
+
+    /**
+     * Signals a write to the object attribute memory of the controller
+     *
+     * @param index
+     *            the index of the byte written in the memory
+     * @param data
+     *            the value of 8 bits written
+     */
+    void OAMWritten(int index, int data) {
+        log(OAM_WRITES + index, data);
+    }
+
+    /**
+     * Signals that the screen was turned off, the lines recorded since the
+     * start of the frame being recorded again once it is turned on
+     */
+    void screenTurnedOff() {
+        frame.recording = false;
+    }
+
+    /**
+     * Records the inputs of the line of the given index of the current frame,
+     * to be drawn with the content of the memories after the writes logged
+     * so far
+     *
+     * @param index
+     *            the index of the line
+     * @param inputs
+     *            long, the registers read to draw the line
+     * @param winY
+     *            the index of the line of the window drawn, if any
+     */
+    void record(int index, long inputs, int winY) {
+        frame.inputs[index] = inputs;
+        frame.winY[index] = winY;
+        frame.writesBefore[index] = frame.writeCount;
+        frame.recording = true;
+    }
+
+    /**
+     * Gives the current frame, whose lines have all been recorded, to the
+     * thread drawing the frames, which drops the previous one if it has not
+     * started to draw it yet, as only the last image is ever shown
+     */
+    void endFrame() {
+        Frame complete = frame;
+        frame = new Frame();
+        // The dropped frame is also taken out of the queue, so that it is
+        // only kept for its writes
+        if (lastImage != null && lastImage.cancel(false)) {
+            executor.remove((Runnable) lastImage);
+            if (complete.videoRam == null)
+                complete.dropped = lastFrame;
+        }
+        lastFrame = complete;
+        lastImage = executor.submit(() -> draw(complete));
+    }
+
+    /**
+     * Returns the image of the last frame given to the thread, waiting for
+     * it to be drawn if necessary
+     *
+     * @return {@link LcdImage}: the last image drawn, or null if no frame was
+     *         given or if the current thread was interrupted while waiting
+     */
+    LcdImage lastImage() {
+        if (lastImage == null)
+            return null;
+        try {
+            return lastImage.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Returns the number of rows of tiles drawn by the thread that were
+     * already decoded, once the last frame given to it is drawn
+     *
+     * @return long, the number of hits of the cache of decoded tiles
+     */
+    long tileCacheHits() {
+        lastImage();
+        return renderer.tileCacheHits();
+    }
+
+    /**
+     * Returns the number of rows of tiles drawn by the thread that had to be
+     * decoded, once the last frame given to it is drawn
+     *
+     * @return long, the number of misses of the cache of decoded tiles
+     */
+    long tileCacheMisses() {
+        lastImage();
+        return renderer.tileCacheMisses();
+    }
+
+    private void log(int index, int data) {
+        Frame f = frame;
+        if (f.writeCount == MAX_WRITES && !f.recording) {
+            // The copies already hold the byte written
+            f.videoRam = liveVideoRam.copy();
+            f.OAM = liveOAM.copy();
+            f.writeCount = 0;
+            return;
+        }
+        if (f.writeCount == f.writes.length)
+            f.writes = Arrays.copyOf(f.writes, 2 * f.writeCount);
+        f.writes[f.writeCount++] = index << Byte.SIZE | data;
+    }
+
+    private LcdImage draw(Frame recorded) {
+        List<Frame> dropped = new ArrayList<>();
+        for (Frame f = recorded.dropped; f != null; f = f.dropped)
+            dropped.add(f);
+        for (int i = dropped.size() - 1; i >= 0; --i) {
+            Frame f = dropped.get(i);
+            load(f);
+            replay(f, 0, f.writeCount);
+        }
+        load(recorded);
+        int replayed = 0;
+        for (int y = 0; y < LCD_HEIGHT; ++y) {
+            replay(recorded, replayed, recorded.writesBefore[y]);
+            replayed = recorded.writesBefore[y];
+            renderer.draw(y, recorded.inputs[y], recorded.winY[y], lines[y]);
+        }
+        replay(recorded, replayed, recorded.writeCount);
+        return LcdImage.ofLines(lines);
+    }
+
+    // Brings the memories of the thread up to date with the copies of the
+    // given frame, if any
+    private void load(Frame f) {
+        if (f.videoRam == null)
+            return;
+        for (int i = 0; i < videoRam.size(); ++i)
+            write(i, f.videoRam.read(i));
+        for (int i = 0; i < OAM.size(); ++i)
+            write(OAM_WRITES + i, f.OAM.read(i));
+    }
+
+    // Replays the writes of the given frame from start (included) to end
+    // (excluded)
+    private void replay(Frame f, int start, int end) {
+        for (int i = start; i < end; ++i)
+            write(f.writes[i] >>> Byte.SIZE, f.writes[i] & 0xFF);
+    }
+
+    // Writes the given byte at the given index of the log, telling the
+    // renderer only if it changed, so that its caches stay valid otherwise
+    private void write(int index, int data) {
+        if (index < OAM_WRITES) {
+            if (videoRam.read(index) != data) {
+                videoRam.write(index, data);
+                renderer.videoRamWritten(AddressMap.VIDEO_RAM_START + index);
+            }
+        } else if (OAM.read(index - OAM_WRITES) != data) {
+            OAM.write(index - OAM_WRITES, data);
+            renderer.OAMWritten(index - OAM_WRITES);
+        }
+    }
+}
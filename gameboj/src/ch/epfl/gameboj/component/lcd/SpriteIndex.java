@@ -0,0 +1,137 @@
+package ch.epfl.gameboj.component.lcd;
+
+import java.util.Arrays;
+
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.memory.Ram;
+
+/**
+ * CS-108
+ * SpriteIndex.java
+ * Purpose: Representing the index of the sprites of the object attribute
+ * memory drawn on each line of the screen, in their drawing order, which is
+ * only computed again after their coordinates or their size changed
+ *
+ * @author Sara Djambazovska
+ * @author Marouane Jaakik
+ *
+ */
+final class SpriteIndex {
+
+    private static final int TOTAL_SPRITES = 40;
+    private static final int MAX_SPRITES_LINE = 10;
+    private static final int BYTES_IN_SPRITE_ATTRIBUTE = 4;
+    private static final int Y_OFFSET = 16;
+
+    private final Ram OAM;
+    private final int lines;
+    private final int[][] sprites;
+    private final int[] counts;
+    private int spriteSize = 8;
+    private boolean valid = false;
+
+    /**
+     * Constructs the index of the sprites of the given object attribute
+     * memory, whose writes must then be signalled to the index
+     *
+     * @param OAM
+     *            {@link Ram}, the object attribute memory
+     * @param lines
+     *            integer, the number of lines of the screen
+     */
+    SpriteIndex(Ram OAM, int lines) {
+        this.OAM = OAM;
+        this.lines = lines;
+        sprites = new int[lines][MAX_SPRITES_LINE];
+        counts = new int[lines];
+    }
+
+    /**
+     * Signals a write to the object attribute memory at the given index,
+     * which only changes the index if it is the one of a coordinate
+     *
+     * @param index
+     *            integer, the index of the byte written in the memory
+     */
+    void written(int index) {
+        if (index % BYTES_IN_SPRITE_ATTRIBUTE <= 1)
+            valid = false;
+    }
+
+    /**
+     * Signals a write to the whole object attribute memory
+     */
+    void writtenAll() {
+        valid = false;
+    }
+
+    /**
+     * Sets the height of the sprites
+     *
+     * @param size
+     *            integer, the height of the sprites, 8 or 16
+     */
+    void setSpriteSize(int size) {
+        if (size != spriteSize) {
+            spriteSize = size;
+            valid = false;
+        }
+    }
+
+    /**
+     * Returns the number of sprites drawn on the given line
+     *
+     * @param line
+     *            integer, the index of the line
+     * @return integer, the number of sprites, at most 10
+     */
+    int count(int line) {
+        update();
+        return counts[line];
+    }
+
+    /**
+     * Returns the indexes of the sprites drawn on the given line, in the
+     * first count(line) elements of the array, sorted by their x coordinate
+     * and index; the array must not be modified
+     *
+     * @param line
+     *            integer, the index of the line
+     * @return the array of the indexes of the sprites
+     */
+    int[] sprites(int line) {
+        update();
+        return sprites[line];
+    }
+
+    /**
+     * Computes the index again if a coordinate or the size of the sprites
+     * changed since it was last computed: the first 10 sprites intersecting
+     * each line are kept, then sorted
+     */
+    private void update() {
+        if (valid)
+            return;
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < TOTAL_SPRITES; i++) {
+            int y = spriteByte(i, 0) - Y_OFFSET;
+            int key = Bits.make16(spriteByte(i, 1), i);
+            int end = Math.min(lines, y + spriteSize);
+            for (int line = Math.max(0, y); line < end; line++) {
+                if (counts[line] < MAX_SPRITES_LINE)
+                    sprites[line][counts[line]++] = key;
+            }
+        }
+        for (int line = 0; line < lines; line++) {
+            int[] s = sprites[line];
+            Arrays.sort(s, 0, counts[line]);
+            for (int i = 0; i < counts[line]; i++)
+                s[i] = Bits.clip(Byte.SIZE, s[i]);
+        }
+        valid = true;
+    }
+
+    private int spriteByte(int index, int byteIndex) {
+        return OAM.read(index * BYTES_IN_SPRITE_ATTRIBUTE + byteIndex);
+    }
+}
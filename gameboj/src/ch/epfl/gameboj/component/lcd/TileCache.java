@@ -0,0 +1,104 @@
+package ch.epfl.gameboj.component.lcd;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.memory.Ram;
+
+/**
+ * CS-108
+ * TileCache.java
+ * Purpose: Representing a cache of the rows of 8 pixels of the 384 tiles of
+ * the video memory, decoded once in the order in which they are drawn, both
+ * normal and flipped horizontally, until the video memory of their row is
+ * written
+ *
+ * @author Sara Djambazovska
+ * @author Marouane Jaakik
+ *
+ */
+final class TileCache {
+
+    private static final int TILE_DATA_END = 0x9800;
+    private static final int BYTES_IN_ROW = 2;
+    private static final int ROWS = (TILE_DATA_END
+            - AddressMap.VIDEO_RAM_START) / BYTES_IN_ROW;
+    private static final int NORMAL_SHIFT = 0, FLIPPED_SHIFT = 16;
+
+    private final Ram videoRam;
+    // The rows decoded, both normal and flipped, and whether they are up to
+    // date with the video memory
+    private final int[] rows = new int[ROWS];
+    private final boolean[] valid = new boolean[ROWS];
+    private long hits = 0, misses = 0;
+
+    /**
+     * Constructs the cache of the tiles stored in the given video memory,
+     * whose writes must then be signalled to the cache
+     *
+     * @param videoRam
+     *            {@link Ram}, the video memory
+     */
+    TileCache(Ram videoRam) {
+        this.videoRam = videoRam;
+    }
+
+    /**
+     * Returns the row of pixels of the tile data at the given address, as
+     * the most significant bits in the upper byte and the least significant
+     * ones in the lower byte, the first pixel being their least significant
+     * bit, as drawn by the {@link LcdImageLine.Builder}
+     *
+     * @param address
+     *            integer, the address of the row, even, in the tile data
+     * @param hFlip
+     *            true if the row is flipped horizontally
+     * @return integer of 16 bits, the two bytes of the row of pixels
+     */
+    int row(int address, boolean hFlip) {
+        int i = (address - AddressMap.VIDEO_RAM_START) / BYTES_IN_ROW;
+        if (valid[i]) {
+            ++hits;
+        } else {
+            ++misses;
+            int index = address - AddressMap.VIDEO_RAM_START;
+            int lsb = videoRam.read(index), msb = videoRam.read(index + 1);
+            rows[i] = Bits.make16(Bits.reverse8(msb), Bits.reverse8(lsb))
+                    << NORMAL_SHIFT | Bits.make16(msb, lsb) << FLIPPED_SHIFT;
+            valid[i] = true;
+        }
+        return Bits.extract(rows[i], hFlip ? FLIPPED_SHIFT : NORMAL_SHIFT,
+                Short.SIZE);
+    }
+
+    /**
+     * Drops the row decoded from the given address of the video memory, if
+     * any, as it has been written
+     *
+     * @param address
+     *            integer, the address of the video memory written
+     */
+    void written(int address) {
+        int index = address - AddressMap.VIDEO_RAM_START;
+        if (address < TILE_DATA_END)
+            valid[index / BYTES_IN_ROW] = false;
+    }
+
+    /**
+     * Returns the number of rows that were found decoded in the cache
+     *
+     * @return long, the number of hits
+     */
+    long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of rows that had to be decoded from the video
+     * memory
+     *
+     * @return long, the number of misses
+     */
+    long misses() {
+        return misses;
+    }
+}
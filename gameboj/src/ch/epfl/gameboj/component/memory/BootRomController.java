@@ -3,6 +3,7 @@ package ch.epfl.gameboj.component.memory;
 import java.util.Objects;
 
 import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
 
@@ -19,8 +20,14 @@ import ch.epfl.gameboj.component.cartridge.Cartridge;
  */
 public final class BootRomController implements Component {
 
+    private static final int CARTRIDGE_ROM_START = 0x0000,
+            CARTRIDGE_ROM_END = 0x8000;
+    private static final int CARTRIDGE_RAM_START = 0xA000,
+            CARTRIDGE_RAM_END = 0xC000;
+    private static final int BOOT_ROM_END = 0x100;
     private Cartridge cartridge;
     private boolean disable = false;
+    private Bus bus;
 
     /**
      * Public constructor that constructs a boot read-only memory controller
@@ -37,6 +44,22 @@ public final class BootRomController implements Component {
         this.cartridge = cartridge;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Component#attachTo(ch.epfl.gameboj.Bus)
+     */
+    @Override
+    public void attachTo(Bus bus) {
+        bus.attach(this, CARTRIDGE_ROM_START, CARTRIDGE_ROM_END);
+        bus.attach(this, CARTRIDGE_RAM_START, CARTRIDGE_RAM_END);
+        bus.attach(this, AddressMap.REG_BOOT_ROM_DISABLE,
+                AddressMap.REG_BOOT_ROM_DISABLE + 1);
+        this.bus = bus;
+        cartridge.mapTo(bus, this);
+        mapBootRom();
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -44,7 +67,7 @@ public final class BootRomController implements Component {
      */
     @Override
     public int read(int address) {
-        if (address >= 0 && address <= 0xFF && !disable)
+        if (address >= 0 && address < BOOT_ROM_END && !disable)
             return Byte.toUnsignedInt(BootRom.DATA[address]);
         return cartridge.read(address);
     }
@@ -56,9 +79,20 @@ public final class BootRomController implements Component {
      */
     @Override
     public void write(int adress, int data) {
-        if (adress == AddressMap.REG_BOOT_ROM_DISABLE)
+        if (adress == AddressMap.REG_BOOT_ROM_DISABLE) {
             disable = true;
-        else
+            if (bus != null)
+                cartridge.mapTo(bus, this);
+        } else {
             cartridge.write(adress, data);
+            mapBootRom();
+        }
+    }
+
+    // Overlays the boot ROM on the first page of the cartridge while it is
+    // active, the cartridge remapping its banks after some writes
+    private void mapBootRom() {
+        if (bus != null && !disable)
+            bus.map(this, 0, BOOT_ROM_END, BootRom.DATA, 0, false);
     }
 }
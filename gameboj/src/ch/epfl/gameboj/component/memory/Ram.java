@@ -2,7 +2,9 @@ package ch.epfl.gameboj.component.memory;
 
 import java.util.Objects;
 
+import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Component;
 
 /**
  * CS-108 
@@ -84,4 +86,72 @@ public final class Ram {
         Preconditions.checkBits8(value);
         data[index] = (byte) value;
     }
+
+    /**
+     * Returns a new random-access memory of the same size, holding a copy of
+     * the bytes of this one
+     * 
+     * @return {@link Ram}, the copy of the memory
+     */
+    public Ram copy() {
+        Ram copy = new Ram(data.length);
+        System.arraycopy(data, 0, copy.data, 0, data.length);
+        return copy;
+    }
+
+    /**
+     * Stores in the random-access memory, from the given index, the given
+     * number of bytes read from the bus starting at the given address
+     * 
+     * @param bus
+     *            {@link Bus} from which the bytes are read
+     * @param start
+     *            integer value of 16 bits, the address of the first byte
+     * @param index
+     *            integer value, the position in the memory of the first byte
+     * @param length
+     *            integer value, the number of bytes to copy
+     * @throws IllegalArgumentException
+     *             if the range of addresses is not contained in the 16 bit
+     *             address space
+     * @throws IndexOutOfBoundsException
+     *             if the memory does not contain the whole range of indexes
+     * @see Bus#read(int, byte[], int, int)
+     */
+    public void load(Bus bus, int start, int index, int length) {
+        bus.read(start, data, index, length);
+    }
+
+    /**
+     * Maps the pages of the bus going from start (included) to end (excluded)
+     * directly onto the random-access memory, the address start corresponding
+     * to the given index, so that they can be read, and written if the mapping
+     * is writable, without going through the given owner
+     * 
+     * @param bus
+     *            {@link Bus} on which the memory is mapped
+     * @param owner
+     *            {@link Component} giving access to the memory on the bus
+     * @param start
+     *            integer value, multiple of 0x100, the first mapped address
+     * @param end
+     *            integer value, multiple of 0x100, the address following the
+     *            last mapped one
+     * @param index
+     *            integer value, the position in the memory of the address
+     *            start
+     * @param writable
+     *            true if the writes to the pages are stored directly in the
+     *            memory, false if they are still given to the owner
+     * @throws IllegalArgumentException
+     *             if the range of addresses does not cover whole pages
+     * @throws IndexOutOfBoundsException
+     *             if the memory does not contain the whole range of addresses
+     *             from the given index
+     * @see Bus#map(Component, int, int, byte[], int, boolean)
+     */
+    public void mapTo(Bus bus, Component owner, int start, int end, int index,
+            boolean writable) {
+        bus.map(owner, start, end, data, index, writable);
+    }
 }
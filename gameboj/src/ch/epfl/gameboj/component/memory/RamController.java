@@ -2,6 +2,7 @@ package ch.epfl.gameboj.component.memory;
 
 import java.util.Objects;
 
+import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.Component;
 
@@ -73,6 +74,21 @@ public final class RamController implements Component {
 
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Component#attachTo(ch.epfl.gameboj.Bus)
+     */
+    @Override
+    public void attachTo(Bus bus) {
+        bus.attach(this, start, end);
+        // Only the pages entirely covered by the controller can be mapped
+        int mappedStart = (start + 0xFF) & ~0xFF, mappedEnd = end & ~0xFF;
+        if (mappedStart < mappedEnd)
+            ram.mapTo(bus, this, mappedStart, mappedEnd, mappedStart - start,
+                    true);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -5,6 +5,9 @@ import java.lang.Byte;
 
 import java.util.Objects;
 
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.Component;
+
 /**
  * CS-108 
  * Rom.java 
@@ -64,4 +67,33 @@ public final class Rom {
         return Byte.toUnsignedInt(data[index]);
     }
 
+    /**
+     * Maps the pages of the bus going from start (included) to end (excluded)
+     * directly onto the read-only memory, the address start corresponding to
+     * the given index, so that they can be read without going through the
+     * given owner, which still receives the writes to them
+     * 
+     * @param bus
+     *            {@link Bus} on which the memory is mapped
+     * @param owner
+     *            {@link Component} giving access to the memory on the bus
+     * @param start
+     *            integer value, multiple of 0x100, the first mapped address
+     * @param end
+     *            integer value, multiple of 0x100, the address following the
+     *            last mapped one
+     * @param index
+     *            integer value, the position in the memory of the address
+     *            start
+     * @throws IllegalArgumentException
+     *             if the range of addresses does not cover whole pages
+     * @throws IndexOutOfBoundsException
+     *             if the memory does not contain the whole range of addresses
+     *             from the given index
+     * @see Bus#map(Component, int, int, byte[], int, boolean)
+     */
+    public void mapTo(Bus bus, Component owner, int start, int end,
+            int index) {
+        bus.map(owner, start, end, data, index, false);
+    }
 }
@@ -7,6 +7,7 @@ import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.lcd.LcdController;
 import ch.epfl.gameboj.component.lcd.LcdImage;
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
 
@@ -28,6 +29,14 @@ public class ImageConverter {
 //     private static final int[] COLOR_MAP = new int[] { 0xFF_FF_FF_FF,
 //     0xFF_D3_D3_D3, 0xFF_A9_A9_A9, 0xFF_00_00_00 };
 
+    private static final int PIXELS = LcdController.LCD_WIDTH
+            * LcdController.LCD_HEIGHT;
+
+    private final WritableImage writableImage = new WritableImage(
+            LcdController.LCD_WIDTH, LcdController.LCD_HEIGHT);
+    private final int[] pixels = new int[PIXELS];
+    private LcdImage lastImage;
+
     /**
      * Converts the given {@link LcdImage} into a {@link Image}
      * 
@@ -36,17 +45,50 @@ public class ImageConverter {
      * @return {@link Image} the converted {@link LcdImage}
      */
     public static Image convert(LcdImage image) {
+        WritableImage writableImage = new WritableImage(
+                LcdController.LCD_WIDTH, LcdController.LCD_HEIGHT);
+        write(image, writableImage, new int[PIXELS]);
+        return writableImage;
+    }
+
+    /**
+     * Converts the given {@link LcdImage} into the single {@link Image} of
+     * this converter, which is only written if the image is not the one
+     * converted last time, as the images of the {@link LcdController} are
+     * immutable and only replaced by a new one when a frame is complete
+     * 
+     * @param image
+     *            {@link LcdImage}: the image to be converted
+     * @return {@link Image} the image of this converter, always the same
+     */
+    public Image update(LcdImage image) {
+        if (image != lastImage) {
+            write(image, writableImage, pixels);
+            lastImage = image;
+        }
+        return writableImage;
+    }
+
+    /**
+     * Writes the pixels of the given {@link LcdImage} into the given
+     * {@link WritableImage} at once, using the given array to store their
+     * colours
+     * 
+     * @param image
+     *            {@link LcdImage}: the image to be converted
+     * @param writableImage
+     *            {@link WritableImage}: the image written
+     * @param pixels
+     *            integer array, able to contain all the pixels of the image
+     */
+    private static void write(LcdImage image, WritableImage writableImage,
+            int[] pixels) {
         Objects.requireNonNull(image);
         Preconditions.checkArgument(image.height() == LcdController.LCD_HEIGHT
                 && image.width() == LcdController.LCD_WIDTH);
-
-        WritableImage writableImage = new WritableImage(160, 144);
+        image.getColors(pixels, COLOR_MAP);
         PixelWriter wr = writableImage.getPixelWriter();
-        for (int y = 0; y < image.height(); ++y) {
-            for (int x = 0; x < image.width(); ++x) {
-                wr.setArgb(x, y, COLOR_MAP[image.get(x, y)]);
-            }
-        }
-        return writableImage;
+        wr.setPixels(0, 0, image.width(), image.height(),
+                PixelFormat.getIntArgbInstance(), pixels, 0, image.width());
     }
 }
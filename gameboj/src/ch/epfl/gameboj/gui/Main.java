@@ -52,8 +52,10 @@ public final class Main extends Application {
         File romFile = new File(Parameters.get(0));
         GameBoy gb = new GameBoy(Cartridge.ofFile(romFile));
         ImageView imageView = new ImageView();
+        ImageConverter converter = new ImageConverter();
         LcdImage image = gb.lcdController().currentImage();
-        imageView.setImage(ImageConverter.convert(image));
+        // The image of the converter is updated in place
+        imageView.setImage(converter.update(image));
         imageView.setFitWidth(image.width() * 2);
         imageView.setFitHeight(image.height() * 2);
 
@@ -77,8 +79,7 @@ public final class Main extends Application {
 
         AnimationTimer timer = new AnimationTimer() {
             public void handle(long currentNanoTime) {
-                imageView.setImage(ImageConverter
-                        .convert(gb.lcdController().currentImage()));
+                converter.update(gb.lcdController().currentImage());
                 long elapsedTime = currentNanoTime - start;
                 gb.runUntil(
                         (long) (elapsedTime * GameBoy.CYCLES_PER_NANOSECOND));
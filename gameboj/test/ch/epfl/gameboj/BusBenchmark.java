@@ -0,0 +1,81 @@
+package ch.epfl.gameboj;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.Timer;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.cpu.Cpu;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.memory.BootRomController;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+
+/**
+ * Measures the throughput of instruction fetches on a bus holding the
+ * components of the GameBoy, once with every component attached to the whole
+ * address space (which is what the bus did before the page table, scanning
+ * all of the components on each access) and once with every component
+ * attached to its own pages only, with its plain memory mapped directly on
+ * the bus.
+ *
+ * Usage: BusBenchmark [rom file] (default: 01-special.gb)
+ */
+public final class BusBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int FETCHES = 20_000_000;
+    private static int sink;
+
+    public static void main(String[] args) throws IOException {
+        File romFile = new File(args.length > 0 ? args[0] : "01-special.gb");
+        Bus flat = new Bus(), paged = new Bus();
+        for (Component c : components(romFile))
+            flat.attach(c);
+        for (Component c : components(romFile))
+            c.attachTo(paged);
+
+        for (int r = 0; r < ROUNDS; ++r) {
+            System.out.printf("round %d: linear scan %6.1f Mfetch/s, "
+                    + "mapped pages %6.1f Mfetch/s%n", r, fetchRate(flat),
+                    fetchRate(paged));
+        }
+    }
+
+    private static List<Component> components(File romFile)
+            throws IOException {
+        Ram workRam = new Ram(AddressMap.WORK_RAM_SIZE);
+        Cpu cpu = new Cpu();
+        return List.of(new RamController(workRam, AddressMap.WORK_RAM_START),
+                new Timer(cpu),
+                new RamController(workRam, AddressMap.ECHO_RAM_START,
+                        AddressMap.ECHO_RAM_END),
+                cpu, new BootRomController(Cartridge.ofFile(romFile)),
+                new LcdController(cpu), new Joypad(cpu));
+    }
+
+    // Fetches mostly from the cartridge, then work RAM and high RAM, the way
+    // a typical program running on the processor does
+    private static double fetchRate(Bus bus) {
+        long start = System.nanoTime();
+        int sum = 0;
+        for (int i = 0; i < FETCHES; ++i) {
+            switch (i & 7) {
+            case 6:
+                sum += bus.read(AddressMap.WORK_RAM_START + (i & 0x1FFF));
+                break;
+            case 7:
+                sum += bus.read(
+                        AddressMap.HIGH_RAM_START + i % AddressMap.HIGH_RAM_SIZE);
+                break;
+            default:
+                sum += bus.read(0x0150 + i % 0x3EB0);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        sink += sum;
+        return FETCHES / seconds / 1e6;
+    }
+}
@@ -5,6 +5,7 @@ package ch.epfl.gameboj;
 import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
 import static ch.epfl.test.TestRandomizer.newRandom;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -104,6 +105,138 @@ class BusTest {
         }
     }
 
+    @Test
+    void attachWithRangeFailsForInvalidRange() {
+        Bus b = new Bus();
+        Component c = new SimpleComponent(0, 0);
+        assertThrows(IllegalArgumentException.class,
+                () -> b.attach(c, -1, 0x10));
+        assertThrows(IllegalArgumentException.class,
+                () -> b.attach(c, 0x10, 0x10));
+        assertThrows(IllegalArgumentException.class,
+                () -> b.attach(c, 0xFF00, 0x10001));
+        assertThrows(NullPointerException.class,
+                () -> b.attach(null, 0, 0x10));
+    }
+
+    @Test
+    void attachWithRangeOnlyGivesAccessesOfItsPages() {
+        SimpleComponent c = new SimpleComponent(0xC012, 42);
+        Bus b = new Bus();
+        b.attach(c, 0xC000, 0xE000);
+        b.write(0xE012, 1);
+        b.read(0x0012);
+        assertFalse(c.wasRead() || c.wasWritten());
+        assertEquals(42, b.read(0xC012));
+        b.write(0xC012, 43);
+        assertEquals(43, b.read(0xC012));
+        assertEquals(0xFF, b.read(0xC013));
+    }
+
+    @Test
+    void overlappingComponentsAreReadInAttachmentOrder() {
+        Bus b = new Bus();
+        b.attach(new SimpleComponent(0xFF05, 1), 0xFF05, 0xFF06);
+        b.attach(new SimpleComponent(0xFF05, 2));
+        b.attach(new SimpleComponent(0xFF06, 3), 0xFF00, 0xFF80);
+        assertEquals(1, b.read(0xFF05));
+        assertEquals(3, b.read(0xFF06));
+    }
+
+    @Test
+    void componentAttachedTwiceToAPageIsWrittenOnce() {
+        int[] writes = new int[1];
+        Component c = new SimpleComponent(0xFF0F, 0) {
+            @Override
+            public void write(int a, int d) {
+                writes[0]++;
+            }
+        };
+        Bus b = new Bus();
+        b.attach(c, 0xFF0F, 0xFF10);
+        b.attach(c, 0xFF80, 0x10000);
+        b.write(0xFFFF, 0);
+        assertEquals(1, writes[0]);
+    }
+
+    @Test
+    void mapFailsForRangeNotCoveringWholePages() {
+        Bus b = new Bus();
+        Component c = new SimpleComponent(0, 0);
+        byte[] data = new byte[0x400];
+        assertThrows(IllegalArgumentException.class,
+                () -> b.map(c, 0x0080, 0x0200, data, 0, true));
+        assertThrows(IllegalArgumentException.class,
+                () -> b.map(c, 0x0100, 0x0180, data, 0, true));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> b.map(c, 0x0100, 0x0400, data, 0x200, true));
+    }
+
+    @Test
+    void mappedPagesAreReadFromTheArray() {
+        Bus b = new Bus();
+        SimpleComponent c = new SimpleComponent(0x1234, 0x56);
+        b.attach(c);
+        byte[] data = new byte[0x300];
+        data[0x234] = 0x12;
+        b.map(c, 0x1100, 0x1300, data, 0x100, false);
+        assertEquals(0x12, b.read(0x1234));
+        assertFalse(c.wasRead());
+        b.unmap(0x1100, 0x1300);
+        assertEquals(0x56, b.read(0x1234));
+    }
+
+    @Test
+    void writesToReadOnlyMappedPagesAreGivenToTheComponents() {
+        Bus b = new Bus();
+        SimpleComponent c = new SimpleComponent(0x1234, 0x56);
+        b.attach(c);
+        byte[] data = new byte[0x100];
+        b.map(c, 0x1200, 0x1300, data, 0, false);
+        b.write(0x1234, 0x78);
+        assertEquals(0, data[0x34]);
+        assertTrue(c.wasWritten());
+    }
+
+    @Test
+    void writesToWritableMappedPagesAreOnlyGivenToTheOtherComponents() {
+        Bus b = new Bus();
+        SimpleComponent owner = new SimpleComponent(0x1234, 0);
+        SimpleComponent before = new SimpleComponent(0x1234, 0);
+        SimpleComponent after = new SimpleComponent(0x1234, 0);
+        b.attach(before);
+        b.attach(owner);
+        byte[] data = new byte[0x100];
+        b.map(owner, 0x1200, 0x1300, data, 0, true);
+        b.attach(after);
+        b.write(0x1234, 0x78);
+        assertEquals(0x78, data[0x34]);
+        assertEquals(0x78, b.read(0x1234));
+        assertFalse(owner.wasWritten());
+        assertTrue(before.wasWritten());
+        assertTrue(after.wasWritten());
+    }
+
+    @Test
+    void bulkReadGivesTheSameBytesAsRead() {
+        Bus b = new Bus();
+        SimpleComponent c = new SimpleComponent(0x1305, 0x9A);
+        b.attach(c);
+        byte[] data = new byte[0x100];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte) i;
+        b.map(c, 0x1200, 0x1300, data, 0, false);
+        byte[] read = new byte[0x20];
+        b.read(0x12F0, read, 0x8, 0x18);
+        for (int i = 0; i < 0x18; ++i)
+            assertEquals(b.read(0x12F0 + i), Byte.toUnsignedInt(read[0x8 + i]));
+        assertEquals(0, read[0x7]);
+        assertThrows(IllegalArgumentException.class,
+                () -> b.read(0xFFF0, read, 0, 0x20));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> b.read(0x1200, read, 0x10, 0x20));
+    }
+
     @Test
     void writeFailsForInvalidData() {
         Random rng = newRandom();
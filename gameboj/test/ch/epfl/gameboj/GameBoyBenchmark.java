@@ -0,0 +1,44 @@
+package ch.epfl.gameboj;
+
+import static ch.epfl.gameboj.Lockstep.CYCLES_PER_FRAME;
+
+import java.io.File;
+import java.io.IOException;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * Measures the speed of the simulation of a {@link GameBoy} running without
+ * any display, in emulated megahertz per host core.
+ *
+ * Usage: GameBoyBenchmark [rom file] [emulated seconds] (default: tetris.gb
+ * for 60 seconds)
+ */
+public final class GameBoyBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        File romFile = new File(args.length > 0 ? args[0] : "tetris.gb");
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 60;
+        long cycles = seconds * GameBoy.CYCLES_PER_SECOND;
+
+        for (int r = 0; r < ROUNDS; ++r) {
+            GameBoy gb = new GameBoy(Cartridge.ofFile(romFile));
+            long start = System.nanoTime();
+            // Runs frame by frame, as the graphical interface does
+            for (long c = CYCLES_PER_FRAME; c < cycles; c += CYCLES_PER_FRAME)
+                gb.runUntil(c);
+            gb.runUntil(cycles);
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            LcdController lcd = gb.lcdController();
+            System.out.printf("round %d: %6.2f emulated MHz (%.2f s for %d "
+                    + "emulated seconds, %.1f%% skipped in idle loops, "
+                    + "%.1f%% tile cache hits)%n", r,
+                    cycles / elapsed / 1e6, elapsed, seconds,
+                    100.0 * gb.cpu().skippedCycles() / cycles,
+                    100.0 * lcd.tileCacheHits()
+                            / (lcd.tileCacheHits() + lcd.tileCacheMisses()));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ch.epfl.gameboj;
+
+import static ch.epfl.gameboj.Lockstep.CYCLES_PER_FRAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+class GameBoyRunUntilTest {
+    private static final int HEADER_START = 0x100, HEADER_END = 0x150;
+
+    // Waits for the timer and VBLANK interrupts in HALT, after the boot
+    // program which takes about 124 frames, counting the wake-ups in B, the
+    // VBLANK interrupts in D and the timer ones in C
+    private static final int[] HALT_PROGRAM = {
+            0x3E, 0x05, // LD A,0x05
+            0xE0, 0x07, // LDH (TAC),A
+            0xE0, 0xFF, // LDH (IE),A
+            0xFB,       // EI
+            0x76,       // loop: HALT
+            0x04,       // INC B
+            0x18, 0xFC  // JR loop
+    };
+
+    // Uses the header of a real cartridge, as the boot program checks it
+    private static Cartridge haltingCartridge() throws IOException {
+        byte[] header = Files.readAllBytes(new File("tetris.gb").toPath());
+        byte[] rom = new byte[0x8000];
+        System.arraycopy(header, HEADER_START, rom, HEADER_START,
+                HEADER_END - HEADER_START);
+        // The entry point jumps to the end of the header
+        for (int i = 0; i < HALT_PROGRAM.length; ++i)
+            rom[HEADER_END + i] = (byte) HALT_PROGRAM[i];
+        rom[0x40] = 0x14; // INC D
+        rom[0x41] = (byte) 0xD9; // RETI
+        rom[0x50] = 0x0C; // INC C
+        rom[0x51] = (byte) 0xD9; // RETI
+        File file = File.createTempFile("halt", ".gb");
+        file.deleteOnExit();
+        Files.write(file.toPath(), rom);
+        return Cartridge.ofFile(file);
+    }
+
+    // Simulates the given Game Boy one cycle at a time, the way runUntil did
+    // before it jumped from one event to the next
+    private static void runCycleByCycle(GameBoy gb, long cycles) {
+        for (long c = 0; c < cycles; ++c) {
+            gb.timer().cycle(c);
+            gb.lcdController().cycle(c);
+            gb.cpu().cycle(c);
+        }
+    }
+
+    private static void assertSameState(GameBoy expected, GameBoy actual,
+            long cycle) {
+        Lockstep.assertSameState(expected, actual, cycle);
+        assertEquals(expected.lcdController().currentImage(),
+                actual.lcdController().currentImage());
+    }
+
+    @Test
+    void runUntilWakesHaltedProcessorLikeCycleByCycleSimulation()
+            throws IOException {
+        long cycles = 200 * CYCLES_PER_FRAME;
+        GameBoy expected = new GameBoy(haltingCartridge());
+        GameBoy actual = new GameBoy(haltingCartridge());
+        runCycleByCycle(expected, cycles);
+        for (long c = CYCLES_PER_FRAME; c <= cycles; c += CYCLES_PER_FRAME)
+            actual.runUntil(c);
+        assertSameState(expected, actual, cycles);
+        // The program did halt, and was woken up by both interrupts
+        int[] state = actual.cpu()._testGetPcSpAFBCDEHL();
+        assertTrue(state[4] != 0 && state[5] != 0 && state[6] != 0,
+                Arrays.toString(state));
+    }
+
+    @Test
+    void runUntilRunsGameLikeCycleByCycleSimulation() throws IOException {
+        long cycles = 300 * CYCLES_PER_FRAME;
+        File rom = new File("tetris.gb");
+        GameBoy expected = new GameBoy(Cartridge.ofFile(rom));
+        GameBoy actual = new GameBoy(Cartridge.ofFile(rom));
+        runCycleByCycle(expected, cycles);
+        actual.runUntil(cycles);
+        assertSameState(expected, actual, cycles);
+    }
+
+    // The GUI splits the simulation according to the time elapsed between two
+    // of its frames, which must not change the emulated timing
+    @Test
+    void runUntilRunsGameTheSameWhateverTheSteps() throws IOException {
+        File rom = new File("legendOfZelda.gb");
+        for (int step : new int[] { 1, 4 }) {
+            GameBoy expected = new GameBoy(Cartridge.ofFile(rom));
+            GameBoy actual = new GameBoy(Cartridge.ofFile(rom));
+            for (int frame = 1; frame <= 300; ++frame) {
+                long end = frame * CYCLES_PER_FRAME;
+                expected.runUntil(end);
+                for (long c = actual.cycles() + step; c < end; c += step)
+                    actual.runUntil(c);
+                actual.runUntil(end);
+                assertSameState(expected, actual, end);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.function.Supplier;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+/**
+ * Helpers of the tests running two Game Boys, or two of their components,
+ * simulated with different options next to each other, and checking that
+ * they stay in the same state.
+ */
+public final class Lockstep {
+    /**
+     * The number of cycles of a frame, i.e. of the drawing of one image
+     */
+    public static final long CYCLES_PER_FRAME = 17556;
+
+    private Lockstep() {
+    }
+
+    /**
+     * Builds an object while the given system property has the given value,
+     * then gives the property back its previous value, which may have been
+     * set for the whole run of the tests
+     *
+     * @param key
+     *            the name of the property, e.g. an option of the simulation
+     * @param value
+     *            the value of the property while building the object
+     * @param constructor
+     *            builds the object
+     * @return the object built
+     */
+    public static <T> T withProperty(String key, boolean value,
+            Supplier<T> constructor) {
+        String previous = System.setProperty(key, String.valueOf(value));
+        try {
+            return constructor.get();
+        } finally {
+            if (previous == null)
+                System.clearProperty(key);
+            else
+                System.setProperty(key, previous);
+        }
+    }
+
+    /**
+     * Builds a Game Boy running the given cartridge, with the given option of
+     * the simulation enabled or not
+     *
+     * @param rom
+     *            the name of the file of the cartridge
+     * @param key
+     *            the name of the property of the option
+     * @param value
+     *            true if the option is enabled
+     * @return the {@link GameBoy}
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static GameBoy newGameBoy(String rom, String key, boolean value)
+            throws IOException {
+        Cartridge cartridge = Cartridge.ofFile(new File(rom));
+        return withProperty(key, value, () -> new GameBoy(cartridge));
+    }
+
+    /**
+     * Checks that the two Game Boys are in the same state: the same registers
+     * of the processor, and the same work memory, input/output registers and
+     * high memory
+     *
+     * @param expected
+     *            the {@link GameBoy} of reference
+     * @param actual
+     *            the {@link GameBoy} checked
+     * @param cycle
+     *            the cycle until which they were run, given in the messages
+     */
+    public static void assertSameState(GameBoy expected, GameBoy actual,
+            long cycle) {
+        assertArrayEquals(expected.cpu()._testGetPcSpAFBCDEHL(),
+                actual.cpu()._testGetPcSpAFBCDEHL(), "at cycle " + cycle);
+        assertSameMemory(expected.bus(), actual.bus(), cycle);
+    }
+
+    /**
+     * Checks that the work memory, input/output registers and high memory
+     * read on the two buses are the same
+     *
+     * @param expected
+     *            the {@link Bus} of reference
+     * @param actual
+     *            the {@link Bus} checked
+     * @param cycle
+     *            the cycle until which their components were run, given in
+     *            the messages
+     */
+    public static void assertSameMemory(Bus expected, Bus actual,
+            long cycle) {
+        assertSameMemory(expected, actual, AddressMap.WORK_RAM_START,
+                AddressMap.WORK_RAM_END, cycle);
+        assertSameMemory(expected, actual, AddressMap.REGS_START, 0x10000,
+                cycle);
+    }
+
+    private static void assertSameMemory(Bus expected, Bus actual, int start,
+            int end, long cycle) {
+        for (int a = start; a < end; ++a) {
+            int address = a;
+            assertEquals(expected.read(a), actual.read(a), () -> String
+                    .format("at address 0x%04x, cycle %d", address, cycle));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ch.epfl.gameboj.bits;
+
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+import ch.epfl.gameboj.component.lcd.LcdImageLine;
+
+/**
+ * Measures the throughput of the operations of the bit vectors, and of the
+ * lines of pixels built on them, at the sizes used by the LCD controller: 160
+ * bits for a line of the screen and 256 bits for a line of the background.
+ *
+ * Usage: BitVectorBenchmark
+ */
+public final class BitVectorBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int OPERATIONS = 2_000_000;
+    private static final int[] SIZES = { 160, 256 };
+    private static int sink;
+
+    public static void main(String[] args) {
+        for (int size : SIZES) {
+            Random rng = new Random(size);
+            BitVector v = random(rng, size), w = random(rng, size);
+            BitVector bg = random(rng, 256);
+            LcdImageLine l = line(rng, size), m = line(rng, size);
+            for (int r = 0; r < ROUNDS; ++r) {
+                System.out.printf("size %d, round %d:%n", size, r);
+                print("shift", i -> v.shift(i % 64 - 32).size());
+                print("extractWrapped",
+                        i -> bg.extractWrapped(i & 0xFF, size).size());
+                print("and/or/not",
+                        i -> v.and(w).or(v.not()).size());
+                print("mapColors",
+                        i -> l.mapColors(i & 0xFF | 1).size());
+                print("below", i -> l.below(m).size());
+                print("join", i -> l.join(m, i % size).size());
+            }
+        }
+    }
+
+    private static void print(String name, IntUnaryOperator operation) {
+        long start = System.nanoTime();
+        int sum = 0;
+        for (int i = 0; i < OPERATIONS; ++i)
+            sum += operation.applyAsInt(i);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        sink += sum;
+        System.out.printf("  %-15s %7.1f Mop/s%n", name,
+                OPERATIONS / seconds / 1e6);
+    }
+
+    private static BitVector random(Random rng, int size) {
+        BitVector.Builder b = new BitVector.Builder(size);
+        for (int i = 0; i < size / Byte.SIZE; ++i)
+            b.setByte(i, rng.nextInt(0x100));
+        return b.build();
+    }
+
+    private static LcdImageLine line(Random rng, int size) {
+        LcdImageLine.Builder b = new LcdImageLine.Builder(size);
+        for (int i = 0; i < size / Byte.SIZE; ++i)
+            b.setByte(i, rng.nextInt(0x100), rng.nextInt(0x100));
+        return b.build();
+    }
+}
@@ -0,0 +1,64 @@
+package ch.epfl.gameboj.bits;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class BitVectorMutableTest {
+
+    private static BitVector random(Random rng, int size) {
+        BitVector.Builder b = new BitVector.Builder(size);
+        for (int i = 0; i < size / Byte.SIZE; ++i)
+            b.setByte(i, rng.nextInt(0x100));
+        return b.build();
+    }
+
+    @Test
+    void operationsInPlaceGiveTheSameVectorsAsImmutableOnes() {
+        Random rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            int size = Integer.SIZE * (1 + rng.nextInt(9));
+            BitVector v = random(rng, size), a = random(rng, size),
+                    b = random(rng, size);
+            BitVector.Mutable m = new BitVector.Mutable(v);
+            assertEquals(v, m.toBitVector());
+            assertEquals(v.not(), m.not().toBitVector());
+            assertEquals(v.not().and(a), m.and(a).toBitVector());
+            v = v.not().and(a);
+            assertEquals(v.or(b), m.or(b).toBitVector());
+            v = v.or(b);
+            assertEquals(v.or(a.and(b)), m.orAnd(a, b).toBitVector());
+            v = v.or(a.and(b));
+            assertEquals(v.and(b.not()).or(a.and(b)),
+                    m.blend(a, b).toBitVector());
+            assertEquals(a, m.set(a).toBitVector());
+        }
+    }
+
+    @Test
+    void builtVectorsAreNotModifiedAfterwards() {
+        BitVector.Mutable m = new BitVector.Mutable(160);
+        BitVector zeros = m.toBitVector();
+        m.not();
+        assertEquals(new BitVector(160), zeros);
+        assertEquals(new BitVector(160, true), m.toBitVector());
+    }
+
+    @Test
+    void operationsFailForVectorsOfDifferentSizes() {
+        BitVector.Mutable m = new BitVector.Mutable(64);
+        BitVector v = new BitVector(32);
+        assertThrows(IllegalArgumentException.class, () -> m.set(v));
+        assertThrows(IllegalArgumentException.class, () -> m.and(v));
+        assertThrows(IllegalArgumentException.class, () -> m.or(v));
+        assertThrows(IllegalArgumentException.class,
+                () -> m.blend(new BitVector(64), v));
+        assertThrows(IllegalArgumentException.class,
+                () -> new BitVector.Mutable(48));
+    }
+}
@@ -0,0 +1,55 @@
+package ch.epfl.gameboj.bits;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class BitVectorWordsTest {
+
+    private static BitVector random(Random rng, int size) {
+        BitVector.Builder b = new BitVector.Builder(size);
+        for (int i = 0; i < size / Byte.SIZE; ++i)
+            b.setByte(i, rng.nextInt(0x100));
+        return b.build();
+    }
+
+    // The sizes that are not multiples of 64 only fill half of their last
+    // word
+    @Test
+    void extractionsGiveTheBitsOfTheInfiniteExtensions() {
+        Random rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            int size = Integer.SIZE * (1 + rng.nextInt(9));
+            int extractedSize = Integer.SIZE * (1 + rng.nextInt(9));
+            int index = rng.nextInt(4 * size) - 2 * size;
+            BitVector v = random(rng, size);
+            BitVector wrapped = v.extractWrapped(index, extractedSize);
+            BitVector zero = v.extractZeroExtended(index, extractedSize);
+            assertEquals(extractedSize, wrapped.size());
+            for (int b = 0; b < extractedSize; ++b) {
+                int source = index + b;
+                assertEquals(v.testBit(Math.floorMod(source, size)),
+                        wrapped.testBit(b));
+                assertEquals(source >= 0 && source < size && v.testBit(source),
+                        zero.testBit(b));
+            }
+        }
+    }
+
+    @Test
+    void bitsBeyondTheSizeDoNotChangeEquality() {
+        BitVector ones = new BitVector(160, true);
+        assertEquals(new BitVector(160), ones.not());
+        assertEquals(ones, ones.extractWrapped(17, 160));
+        assertEquals(ones, ones.not().not());
+        assertEquals(ones.hashCode(), ones.not().not().hashCode());
+        assertNotEquals(new BitVector(32), new BitVector(64));
+        assertEquals(160, ones.toString().length());
+        assertEquals(-1, ones.toString().indexOf('0'));
+    }
+}
@@ -158,4 +158,80 @@ public final class TimerTest implements ComponentTest {
             assertEquals(t.read(0xFF05), tma);
         }
     }
+
+    @Test
+    void cycleCatchesUpWithSkippedCycles() {
+        Random rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            int tac = 0b100 | rng.nextInt(4), tma = rng.nextInt(0x100);
+            Timer t1 = newComponent(), t2 = newComponent();
+            for (Timer t : new Timer[] { t1, t2 }) {
+                t.write(0xFF07, tac);
+                t.write(0xFF06, tma);
+            }
+            int c = 0;
+            while (c < 0x4000) {
+                int next = c + rng.nextInt(300);
+                for (; c <= next; ++c)
+                    t1.cycle(c);
+                t2.cycle(next);
+                assertEquals(t1.read(0xFF04), t2.read(0xFF04));
+                assertEquals(t1.read(0xFF05), t2.read(0xFF05));
+            }
+        }
+    }
+
+    @Test
+    void timerClockedOnlyAtOverflowsMatchesTimerClockedEveryCycle() {
+        Random rng = newRandom();
+        int[] registers = { 0xFF04, 0xFF05, 0xFF06, 0xFF07 };
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            Cpu cpu1 = new Cpu(), cpu2 = new Cpu();
+            Timer t1 = new Timer(cpu1), t2 = new Timer(cpu2);
+            long c = 0;
+            while (c < 0x4000) {
+                long write = c + rng.nextInt(600);
+                for (; c < write; ++c) {
+                    t1.cycle(c);
+                    if (c == t2.nextNonIdleCycle(c))
+                        t2.cycle(c);
+                }
+                // Writes glitch according to the counter at their cycle
+                t1.cycle(write);
+                t2.cycle(write);
+                int address = registers[rng.nextInt(registers.length)];
+                int data = address == 0xFF07 ? 0b100 | rng.nextInt(8)
+                        : rng.nextInt(0x100);
+                t1.write(address, data);
+                t2.write(address, data);
+                ++c;
+                for (int a : registers)
+                    assertEquals(t1.read(a), t2.read(a));
+                assertEquals(cpu1.read(0xFF0F), cpu2.read(0xFF0F));
+            }
+        }
+    }
+
+    @Test
+    void nextNonIdleCycleIsTheCycleOfTheOverflow() {
+        for (int tac = 0b100; tac <= 0b111; ++tac) {
+            Cpu cpu = new Cpu();
+            Timer t = new Timer(cpu);
+            t.write(0xFF07, tac);
+            t.write(0xFF05, 0xF0);
+            long overflow = t.nextNonIdleCycle(0);
+            for (long c = 0; c < overflow; ++c)
+                t.cycle(c);
+            assertEquals(0, cpu.read(0xFF0F));
+            t.cycle(overflow);
+            assertEquals(1 << Cpu.Interrupt.TIMER.index(), cpu.read(0xFF0F));
+        }
+    }
+
+    @Test
+    void nextNonIdleCycleIsInfiniteWhenDisabled() {
+        Timer t = newComponent();
+        t.write(0xFF07, 0b011);
+        assertEquals(Long.MAX_VALUE, t.nextNonIdleCycle(0));
+    }
 }
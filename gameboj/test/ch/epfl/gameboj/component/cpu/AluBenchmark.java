@@ -0,0 +1,67 @@
+package ch.epfl.gameboj.component.cpu;
+
+import java.util.Random;
+
+import ch.epfl.gameboj.component.cpu.Alu.RotDir;
+
+/**
+ * Measures the throughput of the operations on 8 bits of the {@link Alu},
+ * applied to random operands. As the tables are selected when the class is
+ * loaded, the two implementations are compared by running the benchmark
+ * twice, with and without the system property {@link Alu#TABLES_PROPERTY}:
+ *
+ * java -Dgameboj.alu.tables=true ch.epfl.gameboj.component.cpu.AluBenchmark
+ *
+ * Usage: AluBenchmark [operations per round] (default: 50000000)
+ */
+public final class AluBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int OPERANDS = 1 << 16;
+    private static int sink;
+
+    public static void main(String[] args) {
+        int operations = args.length > 0 ? Integer.parseInt(args[0])
+                : 50_000_000;
+        int[] operands = new int[OPERANDS];
+        Random rng = new Random(2018);
+        for (int i = 0; i < OPERANDS; ++i)
+            operands[i] = rng.nextInt(1 << 17);
+        String mode = Boolean.getBoolean(Alu.TABLES_PROPERTY) ? "tables"
+                : "arithmetic";
+        for (int r = 0; r < ROUNDS; ++r) {
+            System.out.printf("round %d: %s %7.1f Mop/s%n", r, mode,
+                    rate(operands, operations));
+        }
+    }
+
+    // Mixes the operations in the proportions of typical game code, mostly
+    // additions and subtractions
+    private static double rate(int[] operands, int operations) {
+        long start = System.nanoTime();
+        int sum = 0;
+        for (int i = 0; i < operations; ++i) {
+            int o = operands[i & (OPERANDS - 1)];
+            int l = o & 0xFF, r = (o >>> 8) & 0xFF;
+            boolean c = (o & 0x10000) != 0;
+            switch (i & 7) {
+            case 0: case 1: case 2:
+                sum += Alu.add(l, r, c);
+                break;
+            case 3: case 4:
+                sum += Alu.sub(l, r, c);
+                break;
+            case 5:
+                sum += Alu.rotate(c ? RotDir.LEFT : RotDir.RIGHT, l, c);
+                break;
+            case 6:
+                sum += Alu.shiftLeft(l) + Alu.swap(r);
+                break;
+            default:
+                sum += Alu.bcdAdjust(l, c, false, c);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        sink += sum;
+        return operations / seconds / 1e6;
+    }
+}
@@ -0,0 +1,211 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static ch.epfl.gameboj.Lockstep.CYCLES_PER_FRAME;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Lockstep;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+
+class BlockCacheExecutionTest {
+    private static final int STEPS = 3000;
+
+    private static final int ROM_BANK_SIZE = 0x4000;
+    private static final int ADDRESS_TYPE_OF_CARTRIDGE = 0x147;
+
+    // Enables all the interrupts, then loops with them disabled from the end
+    // of each iteration to the middle of the next one, so that an interrupt
+    // requested meanwhile is handled in the middle of the block starting the
+    // iteration, right after EI. The handlers count the interrupts in L
+    private static final int[] INTERRUPT_PROGRAM = {
+            0x31, 0xFE, 0xFF, // LD SP,0xFFFE
+            0x3E, 0x1F,       // LD A,0x1F
+            0xE0, 0xFF,       // LDH (IE),A
+            0x04,             // loop: INC B
+            0x0C,             // INC C
+            0xFB,             // EI
+            0x14,             // INC D
+            0x1C,             // INC E
+            0xF3,             // DI
+            0x18, 0xF8        // JR loop
+    };
+
+    // Runs in the work RAM, changing at each iteration an instruction further
+    // down its own block, between INC B and INC C, and one of the block it
+    // calls, on another page, between INC H and DEC H
+    private static final int[] SELF_MODIFYING_PROGRAM = {
+            0x14,             // loop: INC D
+            0xFA, 0x0B, 0xC0, // LD A,(patched)
+            0xEE, 0x08,       // XOR 0x08
+            0xEA, 0x0B, 0xC0, // LD (patched),A
+            0x00,             // NOP
+            0x00,             // NOP
+            0x04,             // patched: INC B
+            0xFA, 0x01, 0xC1, // LD A,(0xC101)
+            0xEE, 0x01,       // XOR 0x01
+            0xEA, 0x01, 0xC1, // LD (0xC101),A
+            0xCD, 0x00, 0xC1, // CALL 0xC100
+            0x18, 0xE7        // JR loop
+    };
+    private static final int[] CALLED_PROGRAM = {
+            0x1C,             // INC E
+            0x24,             // INC H
+            0x2C,             // INC L
+            0x1C,             // INC E
+            0xC9              // RET
+    };
+
+    // Switches between the banks 1 and 2 of an MBC1 cartridge, calling the
+    // code at 0x4000 after each switch, which counts the calls in B in the
+    // bank 1 and in C in the bank 2
+    private static final int[] BANK_SWITCHING_PROGRAM = {
+            0x31, 0xFE, 0xFF, // LD SP,0xFFFE
+            0x3E, 0x01,       // loop: LD A,0x01
+            0xEA, 0x00, 0x20, // LD (0x2000),A
+            0x1C,             // INC E
+            0x1C,             // INC E
+            0xCD, 0x00, 0x40, // CALL 0x4000
+            0x3E, 0x02,       // LD A,0x02
+            0xEA, 0x00, 0x20, // LD (0x2000),A
+            0x1D,             // DEC E
+            0x14,             // INC D
+            0xCD, 0x00, 0x40, // CALL 0x4000
+            0x18, 0xEA        // JR loop
+    };
+
+    private static Cpu newCpu(boolean blockCache) {
+        return Lockstep.withProperty(Cpu.BLOCK_CACHE_PROPERTY, blockCache,
+                Cpu::new);
+    }
+
+    private static byte[] bytes(int[] program, int size) {
+        byte[] b = new byte[size];
+        for (int i = 0; i < program.length; ++i)
+            b[i] = (byte) program[i];
+        return b;
+    }
+
+    private static Cartridge bankSwitchingCartridge() throws IOException {
+        byte[] rom = bytes(BANK_SWITCHING_PROGRAM, 4 * ROM_BANK_SIZE);
+        rom[ADDRESS_TYPE_OF_CARTRIDGE] = 1;
+        for (int bank = 1; bank <= 2; ++bank) {
+            int start = bank * ROM_BANK_SIZE;
+            for (int i = 0; i < 4; ++i)
+                rom[start + i] = (byte) (bank == 1 ? 0x04 : 0x0C); // INC B/C
+            rom[start + 4] = (byte) 0xC9; // RET
+        }
+        File file = File.createTempFile("mbc1", ".gb");
+        file.deleteOnExit();
+        Files.write(file.toPath(), rom);
+        return Cartridge.ofFile(file);
+    }
+
+    // Runs the processors attached to buses holding the same memories by
+    // steps of the given number of cycles, so that the deadlines fall in the
+    // middle of the blocks, requesting an interrupt every few steps if asked
+    // to, and checks that they stay in the same state
+    private static void assertSameExecution(Consumer<Bus> memories,
+            long step, boolean interrupts) {
+        Cpu expected = newCpu(false), actual = newCpu(true);
+        Bus expectedBus = new Bus(), actualBus = new Bus();
+        expected.attachTo(expectedBus);
+        actual.attachTo(actualBus);
+        memories.accept(expectedBus);
+        memories.accept(actualBus);
+
+        long expectedCycle = 0, actualCycle = 0;
+        for (int i = 1; i <= STEPS; ++i) {
+            if (interrupts && i % 7 == 0) {
+                Interrupt interrupt = Interrupt.values()[i / 7
+                        % Interrupt.values().length];
+                expected.requestInterrupt(interrupt);
+                actual.requestInterrupt(interrupt);
+            }
+            expectedCycle = expected.runUntil(expectedCycle, i * step);
+            actualCycle = actual.runUntil(actualCycle, i * step);
+            assertEquals(expectedCycle, actualCycle, "at step " + i);
+            assertArrayEquals(expected._testGetPcSpAFBCDEHL(),
+                    actual._testGetPcSpAFBCDEHL(), "at step " + i);
+        }
+        Lockstep.assertSameMemory(expectedBus, actualBus, STEPS * step);
+        assertTrue(actual.blockCache().cachedCount() > 0);
+    }
+
+    private static void assertSameExecution(String rom, long step, int frames)
+            throws IOException {
+        GameBoy expected = Lockstep.newGameBoy(rom,
+                Cpu.BLOCK_CACHE_PROPERTY, false);
+        GameBoy actual = Lockstep.newGameBoy(rom, Cpu.BLOCK_CACHE_PROPERTY,
+                true);
+        for (long c = step; c <= frames * CYCLES_PER_FRAME; c += step) {
+            expected.runUntil(c);
+            actual.runUntil(c);
+            Lockstep.assertSameState(expected, actual, c);
+        }
+        assertTrue(actual.cpu().blockCache().cachedCount() > 0);
+    }
+
+    @Test
+    void interruptsStopBlocksAtTheSameInstruction() {
+        byte[] rom = bytes(INTERRUPT_PROGRAM, 0x100);
+        for (int i = 0; i < Interrupt.values().length; ++i) {
+            rom[0x40 + 8 * i] = 0x2C; // INC L
+            rom[0x41 + 8 * i] = (byte) 0xD9; // RETI
+        }
+        assertSameExecution(b -> b.attach(new ProgRom(rom), 0, rom.length),
+                37, true);
+    }
+
+    @Test
+    void writesToTheCodeOfBlocksStopAndDropThem() {
+        byte[] rom = { (byte) 0x31, (byte) 0xFE, (byte) 0xFF, // LD SP,0xFFFE
+                (byte) 0xC3, 0x00, (byte) 0xC0 }; // JP 0xC000
+        assertSameExecution(b -> {
+            Ram workRam = new Ram(AddressMap.WORK_RAM_SIZE);
+            for (int i = 0; i < SELF_MODIFYING_PROGRAM.length; ++i)
+                workRam.write(i, SELF_MODIFYING_PROGRAM[i]);
+            for (int i = 0; i < CALLED_PROGRAM.length; ++i)
+                workRam.write(0x100 + i, CALLED_PROGRAM[i]);
+            b.attach(new ProgRom(rom), 0, rom.length);
+            b.attach(new RamController(workRam, AddressMap.WORK_RAM_START));
+        }, 41, false);
+    }
+
+    @Test
+    void bankSwitchesDropTheBlocksOfTheCartridge() {
+        assertSameExecution(b -> {
+            try {
+                Cartridge cartridge = bankSwitchingCartridge();
+                b.attach(cartridge, 0, 2 * ROM_BANK_SIZE);
+                cartridge.mapTo(b, cartridge);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }, 43, false);
+    }
+
+    @Test
+    void interruptsRunTheSameWithTheBlockCache() throws IOException {
+        assertSameExecution("02-interrupts.gb", 1237, 200);
+    }
+
+    @Test
+    void bankSwitchingGamesRunTheSameWithTheBlockCache() throws IOException {
+        assertSameExecution("superMario1.gb", 1237, 300);
+        assertSameExecution("legendOfZelda.gb", 4567, 300);
+    }
+}
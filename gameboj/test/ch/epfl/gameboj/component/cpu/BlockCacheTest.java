@@ -0,0 +1,98 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.AddressMap;
+
+class BlockCacheTest {
+
+    private static BlockCache.Block block(int start, int length) {
+        int[] addresses = new int[length];
+        for (int i = 0; i < length; ++i)
+            addresses[i] = start + i;
+        return new BlockCache.Block(addresses, new int[length],
+                start + length);
+    }
+
+    @Test
+    void blockIsHotAfterEnoughHits() {
+        BlockCache c = new BlockCache();
+        int hits = 0;
+        while (!c.hit(0x150))
+            ++hits;
+        assertTrue(hits > 0);
+        assertFalse(c.hit(0xFF80));
+        c.reject(0x150);
+        assertFalse(c.hit(0x150));
+    }
+
+    @Test
+    void writeToBlockPageDropsIt() {
+        BlockCache c = new BlockCache();
+        BlockCache.Block b = block(0xC0F0, 0x20), other = block(0xC300, 4);
+        c.put(b);
+        c.put(other);
+        c.written(0xC500);
+        assertSame(b, c.get(0xC0F0));
+        c.written(0xC1FF);
+        assertNull(c.get(0xC0F0));
+        assertFalse(b.valid);
+        assertSame(other, c.get(0xC300));
+    }
+
+    @Test
+    void writeToEchoRamDropsWorkRamBlock() {
+        BlockCache c = new BlockCache();
+        BlockCache.Block b = block(0xC300, 4);
+        c.put(b);
+        c.written(0xE310);
+        assertNull(c.get(0xC300));
+    }
+
+    @Test
+    void writeToCartridgeDropsItsBlocks() {
+        BlockCache c = new BlockCache();
+        BlockCache.Block rom = block(0x4000, 4), ram = block(0xC000, 4);
+        c.put(rom);
+        c.put(ram);
+        c.written(0x2000);
+        assertNull(c.get(0x4000));
+        assertSame(ram, c.get(0xC000));
+    }
+
+    @Test
+    void bankSwitchKeepsBlocksOfFirstBank() {
+        BlockCache c = new BlockCache();
+        BlockCache.Block first = block(0x150, 4), last = block(0x3FFE, 4);
+        c.put(first);
+        c.put(last);
+        c.written(0x2000);
+        assertSame(first, c.get(0x150));
+        assertNull(c.get(0x3FFE));
+        c.written(0x6000);
+        assertNull(c.get(0x150));
+        c.put(block(0x150, 4));
+        c.written(AddressMap.REG_BOOT_ROM_DISABLE);
+        assertNull(c.get(0x150));
+    }
+
+    @Test
+    void droppedBlockMustBecomeHotAgain() {
+        BlockCache c = new BlockCache();
+        int hits = 1;
+        while (!c.hit(0x4000))
+            ++hits;
+        c.put(block(0x4000, 4));
+        c.written(0x2000);
+        int hitsAgain = 1;
+        while (!c.hit(0x4000))
+            ++hitsAgain;
+        assertEquals(hits, hitsAgain);
+    }
+}
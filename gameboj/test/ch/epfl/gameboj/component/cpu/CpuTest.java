@@ -7,6 +7,7 @@ import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
 import static ch.epfl.test.TestRandomizer.newRandom;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -16,7 +17,9 @@ import java.util.Random;
 import org.junit.jupiter.api.Test;
 
 import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.Lockstep;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.lcd.LcdController;
 import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.component.memory.RamController;
 
@@ -336,6 +339,21 @@ class CpuTest {
         }
     }
 
+    @Test
+    void hlIncrementAndDecrementCarryIntoH() throws IOException {
+        int[][] cases = { { 0x12FF, 0x1300 }, { 0xFFFF, 0x0000 },
+                { 0x1300, 0x12FF }, { 0x0000, 0xFFFF }, { 0x1234, 0x1235 } };
+        for (int[] c : cases) {
+            Opcode o = c[1] == ((c[0] + 1) & 0xFFFF) ? LD_A_HLRI : LD_HLRD_A;
+            try (ByteArrayOutputStream s = new ByteArrayOutputStream()) {
+                emitN16(s, LD_HL_N16, c[0]);
+                emit(s, o);
+                int[] state = stateAfter(s, LD_HL_N16.cycles + o.cycles);
+                assertEquals(c[1], combine(state[8], state[9]));
+            }
+        }
+    }
+
     @Test
     void ldN8RAWorks() throws IOException {
         Opcode o = LD_N8R_A;
@@ -580,6 +598,136 @@ class CpuTest {
         }
     }
 
+    // Batched execution
+
+    @Test
+    void runUntilExecutesInstructionsLikeCycle() throws IOException {
+        Random rng = newRandom();
+        try (ByteArrayOutputStream s = new ByteArrayOutputStream()) {
+            Opcode[] os = new Opcode[] { LD_A_N8, LD_B_N8, LD_C_N8, LD_D_N8,
+                    LD_E_N8, LD_H_N8, LD_L_N8 };
+            for (Opcode o : os)
+                emitN8(s, o, rng.nextInt(0x100));
+            Bus b = new Bus();
+            Cpu c = new Cpu();
+            new ProgRom(s.toByteArray()).attachTo(b);
+            c.attachTo(b);
+            assertEquals(totalCycles(os), c.runUntil(0, totalCycles(os)));
+            assertCpuStateEquals(stateAfter(s, totalCycles(os)),
+                    c._testGetPcSpAFBCDEHL());
+        }
+    }
+
+    @Test
+    void runUntilStopsAfterWriteToRegister() throws IOException {
+        try (ByteArrayOutputStream s = new ByteArrayOutputStream()) {
+            emitN8(s, LD_A_N8, 0x12);
+            emitN8(s, LD_N8R_A, 0x80);
+            emitN8(s, LD_N8R_A, 0x05);
+            emit(s, NOP);
+            Bus b = new Bus();
+            Cpu c = new Cpu();
+            new ProgRom(s.toByteArray()).attachTo(b);
+            c.attachTo(b);
+            // The write to TIMA is seen by the other components from the
+            // cycle following the one of the instruction
+            int write = LD_A_N8.cycles + LD_N8R_A.cycles;
+            assertEquals(write + 1, c.runUntil(0, 100));
+            assertEquals(write, c.currentCycle());
+            int end = write + LD_N8R_A.cycles + NOP.cycles;
+            assertEquals(end, c.runUntil(write + 1, end));
+            assertEquals(end - NOP.cycles, c.currentCycle());
+        }
+    }
+
+    @Test
+    void runUntilSkipsIdleLoopsWithoutChangingTiming() throws IOException {
+        try (ByteArrayOutputStream s = new ByteArrayOutputStream()) {
+            emitN16(s, LD_HL_N16, 0xC000);
+            emit(s, LD_A_HLR);
+            emitN8(s, CP_A_N8, 0x12);
+            emitN8(s, JR_NZ_E8, -(LD_A_HLR.totalBytes + CP_A_N8.totalBytes
+                    + JR_NZ_E8.totalBytes) & 0xFF);
+            Cpu[] cpus = new Cpu[2];
+            for (int i = 0; i < cpus.length; ++i) {
+                cpus[i] = Lockstep.withProperty(Cpu.IDLE_LOOPS_PROPERTY,
+                        i == 1, Cpu::new);
+                Bus b = new Bus();
+                new ProgRom(s.toByteArray()).attachTo(b);
+                ramAt(0xC000, new byte[] { 0x11 }).attachTo(b);
+                cpus[i].attachTo(b);
+            }
+            for (long deadline : new long[] { 1000, 1003, 5000 }) {
+                for (Cpu c : cpus)
+                    c.runUntil(0, deadline);
+                assertCpuStateEquals(cpus[0]._testGetPcSpAFBCDEHL(),
+                        cpus[1]._testGetPcSpAFBCDEHL());
+                assertEquals(cpus[0].currentCycle(), cpus[1].currentCycle());
+            }
+            assertEquals(0, cpus[0].skippedCycles());
+            assertTrue(cpus[1].skippedCycles() > 0);
+        }
+    }
+
+    @Test
+    void runUntilSkipsLoopsPollingLyAndStatWithoutChangingTiming()
+            throws IOException {
+        try (ByteArrayOutputStream s = new ByteArrayOutputStream()) {
+            int pollLength = LD_A_N8R.totalBytes + CP_A_N8.totalBytes
+                    + JR_NZ_E8.totalBytes;
+            // Turns the screen on, then waits for the VBLANK line by line
+            // and for the next mode 0 mode change by mode change
+            emitN8(s, LD_A_N8, 0x80);
+            emitN8(s, LD_N8R_A, 0x40);
+            emitN8(s, LD_A_N8R, 0x44);
+            emitN8(s, CP_A_N8, 0x90);
+            emitN8(s, JR_NZ_E8, -pollLength & 0xFF);
+            emitN8(s, LD_A_N8R, 0x41);
+            emitN8(s, AND_A_N8, 0x03);
+            emitN8(s, JR_NZ_E8, -pollLength & 0xFF);
+            emitN8(s, JR_E8, -(2 * pollLength + JR_E8.totalBytes) & 0xFF);
+            Cpu[] cpus = new Cpu[2];
+            LcdController[] lcds = new LcdController[cpus.length];
+            for (int i = 0; i < cpus.length; ++i) {
+                cpus[i] = Lockstep.withProperty(Cpu.IDLE_LOOPS_PROPERTY,
+                        i == 1, Cpu::new);
+                lcds[i] = new LcdController(cpus[i]);
+                Bus b = new Bus();
+                new ProgRom(s.toByteArray()).attachTo(b);
+                cpus[i].attachTo(b);
+                lcds[i].attachTo(b);
+                cpus[i].setLcdController(lcds[i]);
+            }
+            long cycle = 0;
+            for (long deadline = 1000; deadline < 100_000; deadline += 997) {
+                for (int i = 0; i < cpus.length; ++i)
+                    runWithLcd(cpus[i], lcds[i], cycle, deadline);
+                cycle = deadline;
+                assertCpuStateEquals(cpus[0]._testGetPcSpAFBCDEHL(),
+                        cpus[1]._testGetPcSpAFBCDEHL());
+                assertEquals(cpus[0].currentCycle(), cpus[1].currentCycle());
+            }
+            assertEquals(0, cpus[0].skippedCycles());
+            assertTrue(cpus[1].skippedCycles() > cycle / 2);
+        }
+    }
+
+    // Simulates the processor and the LCD controller like GameBoy.runUntil
+    private static void runWithLcd(Cpu c, LcdController lcd, long cycle,
+            long end) {
+        while (cycle < end) {
+            long next = Math.min(end,
+                    Math.max(cycle, lcd.nextNonIdleCycle(cycle)));
+            cycle = c.runUntil(cycle, next);
+            if (cycle == next && next < end) {
+                lcd.cycle(next);
+                c.cycle(next);
+                cycle = next + 1;
+            }
+        }
+        lcd.cycle(end - 1);
+    }
+
     private static int combine(int h, int l) {
         return (h << 8) | l;
     }
@@ -655,22 +803,3 @@ class CpuTest {
         return c;
     }
 }
-
-class ProgRom implements Component {
-    private final byte[] p;
-
-    public ProgRom(byte[] p) {
-        this.p = Arrays.copyOf(p, p.length);
-    }
-
-    @Override
-    public int read(int address) {
-        if (0 <= address && address < p.length)
-            return Byte.toUnsignedInt(p[address]);
-        else
-            return Component.NO_DATA;
-    }
-
-    @Override
-    public void write(int address, int data) { }
-}
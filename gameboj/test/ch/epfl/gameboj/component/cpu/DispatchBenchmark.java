@@ -0,0 +1,43 @@
+package ch.epfl.gameboj.component.cpu;
+
+import java.io.File;
+import java.io.IOException;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+/**
+ * Measures the speed of the processor executing the Blargg test ROMs. It only
+ * uses the interface of GameBoy and Cartridge, unchanged since the first
+ * version of the tree, so that it can be compiled against an older checkout,
+ * e.g. the one dispatching the instructions through a switch on the family of
+ * their opcode, and its results compared with the current ones.
+ *
+ * Usage: DispatchBenchmark [emulated cycles per ROM] (default: 10000000)
+ */
+public final class DispatchBenchmark {
+    private static final int ROUNDS = 5;
+    private static final String[] ROMS = { "01-special.gb",
+            "02-interrupts.gb", "03-op sp,hl.gb", "04-op r,imm.gb",
+            "05-op rp.gb", "06-ld r,r.gb", "07-jr,jp,call,ret,rst.gb",
+            "08-misc instrs.gb", "09-op r,r.gb", "10-bit ops.gb",
+            "11-op a,(hl).gb" };
+
+    public static void main(String[] args) throws IOException {
+        long cycles = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000;
+        for (int r = 0; r < ROUNDS; ++r)
+            System.out.printf("round %d: %6.2f emulated MHz%n", r,
+                    speed(cycles));
+    }
+
+    private static double speed(long cycles) throws IOException {
+        double seconds = 0;
+        for (String rom : ROMS) {
+            GameBoy gb = new GameBoy(Cartridge.ofFile(new File(rom)));
+            long start = System.nanoTime();
+            gb.runUntil(cycles);
+            seconds += (System.nanoTime() - start) / 1e9;
+        }
+        return ROMS.length * cycles / seconds / 1e6;
+    }
+}
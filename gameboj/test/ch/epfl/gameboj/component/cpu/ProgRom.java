@@ -0,0 +1,24 @@
+package ch.epfl.gameboj.component.cpu;
+
+import java.util.Arrays;
+
+import ch.epfl.gameboj.component.Component;
+
+class ProgRom implements Component {
+    private final byte[] p;
+
+    public ProgRom(byte[] p) {
+        this.p = Arrays.copyOf(p, p.length);
+    }
+
+    @Override
+    public int read(int address) {
+        if (0 <= address && address < p.length)
+            return Byte.toUnsignedInt(p[address]);
+        else
+            return Component.NO_DATA;
+    }
+
+    @Override
+    public void write(int address, int data) { }
+}
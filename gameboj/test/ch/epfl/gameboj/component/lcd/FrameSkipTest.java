@@ -0,0 +1,90 @@
+package ch.epfl.gameboj.component.lcd;
+
+import static ch.epfl.gameboj.Lockstep.CYCLES_PER_FRAME;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Lockstep;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.cpu.Cpu;
+
+class FrameSkipTest {
+    private static GameBoy newGameBoy(String rom) throws IOException {
+        return new GameBoy(Cartridge.ofFile(new File(rom)));
+    }
+
+    // Runs the game with one frame drawn in the given interval next to the
+    // game drawing every frame, the image being one of the last ones drawn,
+    // a new image being drawn at each VBLANK
+    private static void assertSkippingKeepsTiming(String rom, int interval,
+            int frames) throws IOException {
+        GameBoy expected = newGameBoy(rom);
+        GameBoy actual = newGameBoy(rom);
+        actual.lcdController().setFrameSkip(interval);
+        List<LcdImage> drawn = new ArrayList<>();
+        drawn.add(expected.lcdController().currentImage());
+        int same = 0;
+        for (int f = 1; f <= frames; ++f) {
+            long cycle = f * CYCLES_PER_FRAME;
+            expected.runUntil(cycle);
+            actual.runUntil(cycle);
+            Lockstep.assertSameState(expected, actual, cycle);
+            LcdImage current = expected.lcdController().currentImage();
+            if (current != drawn.get(drawn.size() - 1))
+                drawn.add(current);
+            LcdImage image = actual.lcdController().currentImage();
+            List<LcdImage> last = drawn.subList(
+                    Math.max(0, drawn.size() - interval), drawn.size());
+            assertTrue(last.contains(image), "at frame " + f);
+            if (image.equals(current))
+                ++same;
+        }
+        assertTrue(same >= frames / interval);
+    }
+
+    @Test
+    void skippedFramesKeepTheTimingOfTheRegistersAndInterrupts()
+            throws IOException {
+        assertSkippingKeepsTiming("tetris.gb", 2, 300);
+        assertSkippingKeepsTiming("tetris.gb", 3, 300);
+    }
+
+    @Test
+    void framesDrawnAfterSkippedOnesDrawTheWindow() throws IOException {
+        // The game draws the window from its title screen
+        assertSkippingKeepsTiming("donkeyKong.gb", 2, 600);
+    }
+
+    @Test
+    void onlyRequestedFramesAreDrawn() throws IOException {
+        GameBoy gb = newGameBoy("tetris.gb");
+        LcdController lcd = gb.lcdController();
+        lcd.setFrameSkip(0);
+        LcdImage blank = lcd.currentImage();
+        gb.runUntil(300 * CYCLES_PER_FRAME);
+        assertSame(blank, lcd.currentImage());
+        lcd.requestFrame();
+        gb.runUntil(302 * CYCLES_PER_FRAME);
+        LcdImage drawn = lcd.currentImage();
+        assertNotEquals(blank, drawn);
+        gb.runUntil(320 * CYCLES_PER_FRAME);
+        assertSame(drawn, lcd.currentImage());
+    }
+
+    @Test
+    void setFrameSkipFailsForNegativeInterval() {
+        LcdController lcd = new LcdController(new Cpu());
+        assertThrows(IllegalArgumentException.class,
+                () -> lcd.setFrameSkip(-1));
+    }
+}
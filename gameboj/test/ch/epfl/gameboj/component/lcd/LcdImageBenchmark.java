@@ -0,0 +1,63 @@
+package ch.epfl.gameboj.component.lcd;
+
+import static ch.epfl.gameboj.Lockstep.CYCLES_PER_FRAME;
+
+import java.io.File;
+import java.io.IOException;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+/**
+ * Measures the throughput of the expansion of whole images into the colours
+ * of the screen, as done for each frame shown: once one pixel at a time and
+ * once with the lookup of the pixels by groups of 4, on the images of a game
+ * rendered back to back.
+ *
+ * Usage: LcdImageBenchmark [rom file] (default: tetris.gb)
+ */
+public final class LcdImageBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int FRAMES = 64;
+    private static final int EXPANSIONS = 20_000;
+    private static final int[] COLOR_MAP = { 0xFFFFFFFF, 0xFF00BFFF,
+            0xFFF46E78, 0xFF000000 };
+    private static int sink;
+
+    public static void main(String[] args) throws IOException {
+        String rom = args.length > 0 ? args[0] : "tetris.gb";
+        GameBoy gb = new GameBoy(Cartridge.ofFile(new File(rom)));
+        // Skips the boot program
+        gb.runUntil(200 * CYCLES_PER_FRAME);
+        LcdImage[] images = new LcdImage[FRAMES];
+        for (int f = 0; f < FRAMES; ++f) {
+            gb.runUntil(gb.cycles() + CYCLES_PER_FRAME);
+            images[f] = gb.lcdController().currentImage();
+        }
+        int[] colors = new int[LcdController.LCD_WIDTH
+                * LcdController.LCD_HEIGHT];
+        for (int r = 0; r < ROUNDS; ++r) {
+            System.out.printf("round %d: by pixel %7.0f frames/s, "
+                    + "by groups %7.0f frames/s%n", r,
+                    rate(images, colors, false), rate(images, colors, true));
+        }
+    }
+
+    private static double rate(LcdImage[] images, int[] colors,
+            boolean groups) {
+        long start = System.nanoTime();
+        for (int i = 0; i < EXPANSIONS; ++i) {
+            LcdImage image = images[i % images.length];
+            if (groups) {
+                image.getColors(colors, COLOR_MAP);
+            } else {
+                for (int y = 0, p = 0; y < image.height(); ++y)
+                    for (int x = 0; x < image.width(); ++x, ++p)
+                        colors[p] = COLOR_MAP[image.get(x, y)];
+            }
+            sink += colors[i % colors.length];
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return EXPANSIONS / seconds;
+    }
+}
@@ -0,0 +1,81 @@
+package ch.epfl.gameboj.component.lcd;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LcdImageTest {
+    private static final int WIDTH = 64, HEIGHT = 3;
+
+    private static LcdImageLine randomLine(Random rng) {
+        LcdImageLine.Builder b = new LcdImageLine.Builder(WIDTH);
+        for (int i = 0; i < WIDTH / 8; ++i)
+            b.setByte(i, rng.nextInt(0x100), rng.nextInt(0x100));
+        return b.build();
+    }
+
+    @Test
+    void packedImageGivesTheColorsOfItsLines() {
+        Random rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            List<LcdImageLine> lines = new ArrayList<>();
+            LcdImage.Builder builder = new LcdImage.Builder(HEIGHT, WIDTH);
+            for (int y = 0; y < HEIGHT; ++y) {
+                lines.add(randomLine(rng));
+                // Setting a line again replaces all of its pixels
+                builder.setLine(randomLine(rng), y);
+                builder.setLine(lines.get(y), y);
+            }
+            LcdImage image = new LcdImage(HEIGHT, WIDTH, lines);
+            assertEquals(image, builder.build());
+            assertEquals(image.hashCode(), builder.build().hashCode());
+            int[] colors = new int[WIDTH * HEIGHT];
+            image.getColors(colors);
+            for (int y = 0; y < HEIGHT; ++y) {
+                LcdImageLine l = lines.get(y);
+                for (int x = 0; x < WIDTH; ++x) {
+                    int color = (l.msb().testBit(x) ? 2 : 0)
+                            | (l.lsb().testBit(x) ? 1 : 0);
+                    assertEquals(color, image.get(x, y));
+                    assertEquals(color, colors[y * WIDTH + x]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void colorsCanBeMappedWhenStored() {
+        Random rng = newRandom();
+        int[] map = { 0xFFFFFFFF, 0xFF00BFFF, 0xFFF46E78, 0xFF000000 };
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            List<LcdImageLine> lines = new ArrayList<>();
+            for (int y = 0; y < HEIGHT; ++y)
+                lines.add(randomLine(rng));
+            LcdImage image = new LcdImage(HEIGHT, WIDTH, lines);
+            int[] colors = new int[WIDTH * HEIGHT];
+            image.getColors(colors, map);
+            for (int y = 0; y < HEIGHT; ++y)
+                for (int x = 0; x < WIDTH; ++x)
+                    assertEquals(map[image.get(x, y)], colors[y * WIDTH + x]);
+        }
+    }
+
+    @Test
+    void imagesWithDifferentOpacitiesAreDifferent() {
+        LcdImageLine blank = new LcdImageLine.Builder(WIDTH).build();
+        LcdImageLine opaque = new LcdImageLine(blank.msb(), blank.lsb(),
+                blank.msb().not());
+        List<LcdImageLine> lines = new ArrayList<>(List.of(blank, blank,
+                blank));
+        LcdImage a = new LcdImage(HEIGHT, WIDTH, lines);
+        lines.set(1, opaque);
+        assertNotEquals(a, new LcdImage(HEIGHT, WIDTH, lines));
+    }
+}
@@ -0,0 +1,91 @@
+package ch.epfl.gameboj.component.lcd;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LineBufferTest {
+    private static final int SIZE = 160;
+
+    // Fills the buffer and the builder of an immutable line with the same
+    // random bytes of pixels
+    private static LcdImageLine randomLine(Random rng, LineBuffer buffer) {
+        LcdImageLine.Builder builder = new LcdImageLine.Builder(
+                buffer.size());
+        for (int i = 0; i < buffer.size() / Byte.SIZE; ++i) {
+            int msb = rng.nextInt(0x100), lsb = rng.nextInt(0x100);
+            buffer.setByte(i, msb, lsb);
+            builder.setByte(i, msb, lsb);
+        }
+        return builder.build();
+    }
+
+    @Test
+    void operationsInPlaceGiveTheSameLinesAsImmutableOnes() {
+        Random rng = newRandom();
+        LineBuffer b = new LineBuffer(SIZE), other = new LineBuffer(SIZE),
+                wide = new LineBuffer(256);
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            LcdImageLine l = randomLine(rng, b);
+            LcdImageLine o = randomLine(rng, other);
+            LcdImageLine w = randomLine(rng, wide);
+            int palette = rng.nextInt(0x100);
+            b.mapColors(palette);
+            l = l.mapColors(palette);
+            assertEquals(l, b.toLine());
+            int distance = rng.nextInt(2 * SIZE) - SIZE;
+            b.shift(distance);
+            l = l.shift(distance);
+            assertEquals(l, b.toLine());
+            int n = rng.nextInt(SIZE + 1);
+            b.join(other, n);
+            l = l.join(o, n);
+            assertEquals(l, b.toLine());
+            b.below(other);
+            l = l.below(o);
+            assertEquals(l, b.toLine());
+            o = randomLine(rng, other);
+            other.above(b);
+            o = l.below(o, o.opacity().or(l.opacity().not()));
+            assertEquals(o, other.toLine());
+            int pixel = rng.nextInt(512) - 256;
+            b.extractWrapped(wide, pixel);
+            assertEquals(w.extractWrapped(pixel, SIZE), b.toLine());
+        }
+    }
+
+    @Test
+    void draw8DrawsOnlyTheMaskedPixelsInsideTheLine() {
+        Random rng = newRandom();
+        LineBuffer b = new LineBuffer(SIZE);
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            LcdImageLine l = randomLine(rng, b);
+            int msb = rng.nextInt(0x100), lsb = rng.nextInt(0x100);
+            int x = rng.nextInt(SIZE + 16) - 8;
+            b.draw8(x, msb, lsb, msb | lsb);
+            LcdImageLine sprite = new LcdImageLine.Builder(SIZE)
+                    .setByte(0, msb, lsb).build().shift(x);
+            assertEquals(l.below(sprite), b.toLine());
+        }
+    }
+
+    @Test
+    void mapColorsGivesEachPixelTheColorOfThePalette() {
+        Random rng = newRandom();
+        for (int palette = 0; palette < 0x100; ++palette) {
+            int msb = rng.nextInt(), lsb = rng.nextInt();
+            long colors = LineBuffer.mapColors(msb, lsb, palette);
+            for (int x = 0; x < Integer.SIZE; ++x) {
+                int color = (msb >>> x & 1) << 1 | lsb >>> x & 1;
+                int expected = palette >>> (2 * color) & 0b11;
+                int actual = (int) (colors >>> (Integer.SIZE + x) & 1) << 1
+                        | (int) (colors >>> x & 1);
+                assertEquals(expected, actual);
+            }
+        }
+    }
+}
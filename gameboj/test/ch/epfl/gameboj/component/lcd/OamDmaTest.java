@@ -0,0 +1,54 @@
+package ch.epfl.gameboj.component.lcd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.cpu.Cpu;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+
+class OamDmaTest {
+    private static final int REG_DMA = 0xFF46;
+
+    private static LcdController newController(Bus bus) {
+        Cpu cpu = new Cpu();
+        cpu.attachTo(bus);
+        LcdController lcd = new LcdController(cpu);
+        lcd.attachTo(bus);
+        return lcd;
+    }
+
+    private static void cycle(LcdController lcd, long cycles) {
+        for (long c = 0; c < cycles; ++c)
+            lcd.cycle(c);
+    }
+
+    @Test
+    void dmaCopiesTheSourcePageToOAM() {
+        Bus bus = new Bus();
+        LcdController lcd = newController(bus);
+        new RamController(new Ram(AddressMap.WORK_RAM_SIZE),
+                AddressMap.WORK_RAM_START).attachTo(bus);
+        for (int i = 0; i < AddressMap.OAM_RAM_SIZE; ++i)
+            bus.write(AddressMap.WORK_RAM_START + i, i ^ 0x5A);
+        bus.write(REG_DMA, AddressMap.WORK_RAM_START >>> 8);
+        cycle(lcd, 2 * AddressMap.OAM_RAM_SIZE);
+        for (int i = 0; i < AddressMap.OAM_RAM_SIZE; ++i)
+            assertEquals(i ^ 0x5A, bus.read(AddressMap.OAM_START + i));
+    }
+
+    @Test
+    void dmaFromOAMToItselfKeepsItsContent() {
+        Bus bus = new Bus();
+        LcdController lcd = newController(bus);
+        bus.write(AddressMap.OAM_START, 0x42);
+        bus.write(AddressMap.OAM_START + 0x9F, 0x24);
+        bus.write(REG_DMA, AddressMap.OAM_START >>> 8);
+        cycle(lcd, 200);
+        assertEquals(0x42, bus.read(AddressMap.OAM_START));
+        assertEquals(0x24, bus.read(AddressMap.OAM_START + 0x9F));
+    }
+}
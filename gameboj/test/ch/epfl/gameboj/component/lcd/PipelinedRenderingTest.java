@@ -0,0 +1,87 @@
+package ch.epfl.gameboj.component.lcd;
+
+import static ch.epfl.gameboj.Lockstep.CYCLES_PER_FRAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Lockstep;
+
+class PipelinedRenderingTest {
+    private static GameBoy newGameBoy(String rom, boolean pipelined)
+            throws IOException {
+        return Lockstep.newGameBoy(rom, LcdController.PIPELINED_PROPERTY,
+                pipelined);
+    }
+
+    // Runs the game drawn on the thread of the controller next to the game
+    // drawn on the thread of its own, by steps of the given number of cycles
+    private static void assertSameFrames(String rom, int frameSkip,
+            long step, int frames) throws IOException {
+        GameBoy expected = newGameBoy(rom, false);
+        GameBoy actual = newGameBoy(rom, true);
+        expected.lcdController().setFrameSkip(frameSkip);
+        actual.lcdController().setFrameSkip(frameSkip);
+        for (long c = step; c <= frames * CYCLES_PER_FRAME; c += step) {
+            expected.runUntil(c);
+            actual.runUntil(c);
+            Lockstep.assertSameState(expected, actual, c);
+            assertEquals(expected.lcdController().currentImage(),
+                    actual.lcdController().currentImage(), "at cycle " + c);
+        }
+        assertNotEquals(new LcdImage.Builder(LcdController.LCD_HEIGHT,
+                LcdController.LCD_WIDTH).build(),
+                actual.lcdController().currentImage());
+    }
+
+    @Test
+    void framesDrawnOnAnotherThreadAreTheSame() throws IOException {
+        assertSameFrames("tetris.gb", 1, CYCLES_PER_FRAME, 400);
+    }
+
+    @Test
+    void framesWithTheWindowDrawnOnAnotherThreadAreTheSame()
+            throws IOException {
+        assertSameFrames("donkeyKong.gb", 1, CYCLES_PER_FRAME, 600);
+    }
+
+    @Test
+    void imagesAreTheSameWhenAskedAtAnyCycle() throws IOException {
+        assertSameFrames("superMario1.gb", 1, 4567, 400);
+    }
+
+    @Test
+    void skippedFramesAreNotDrawnOnAnotherThread() throws IOException {
+        assertSameFrames("pacman.gb", 3, CYCLES_PER_FRAME, 400);
+    }
+
+    @Test
+    void framesDroppedBeforeBeingDrawnKeepTheirWrites() throws IOException {
+        // The images are only asked for at the end, so the thread drawing
+        // them can drop frames when it is late
+        assertSameFrames("legendOfZelda.gb", 1, 200 * CYCLES_PER_FRAME, 800);
+    }
+
+    @Test
+    void frameRequestedAfterManySkippedOnesIsTheSame() throws IOException {
+        // The writes done while the frames are not drawn are then too many to
+        // be logged
+        GameBoy expected = newGameBoy("tetris.gb", false);
+        GameBoy actual = newGameBoy("tetris.gb", true);
+        for (GameBoy gb : new GameBoy[] { expected, actual }) {
+            gb.lcdController().setFrameSkip(0);
+            gb.runUntil(300 * CYCLES_PER_FRAME);
+            gb.lcdController().requestFrame();
+            gb.runUntil(302 * CYCLES_PER_FRAME);
+        }
+        assertEquals(expected.lcdController().currentImage(),
+                actual.lcdController().currentImage());
+        assertNotEquals(new LcdImage.Builder(LcdController.LCD_HEIGHT,
+                LcdController.LCD_WIDTH).build(),
+                actual.lcdController().currentImage());
+    }
+}
@@ -0,0 +1,60 @@
+package ch.epfl.gameboj.component.lcd;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.memory.Ram;
+
+class SpriteIndexTest {
+    private static final int LINES = 144;
+
+    // Scans the whole memory for the given line, as the controller did
+    private static int[] spritesIntersectingLine(Ram oam, int line,
+            int size) {
+        int[] sprites = new int[10];
+        int count = 0;
+        for (int i = 0; i < 40 && count < 10; i++) {
+            int y = oam.read(4 * i) - 16;
+            if (line >= y && line < y + size)
+                sprites[count++] = Bits.make16(oam.read(4 * i + 1), i);
+        }
+        Arrays.sort(sprites, 0, count);
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++)
+            result[i] = Bits.clip(8, sprites[i]);
+        return result;
+    }
+
+    private static void assertSameSprites(Ram oam, SpriteIndex index,
+            int size) {
+        index.setSpriteSize(size);
+        for (int line = 0; line < LINES; line++) {
+            assertArrayEquals(spritesIntersectingLine(oam, line, size),
+                    Arrays.copyOf(index.sprites(line), index.count(line)));
+        }
+    }
+
+    @Test
+    void indexGivesTheSpritesOfEachLineAfterWrites() {
+        Random rng = newRandom();
+        Ram oam = new Ram(160);
+        SpriteIndex index = new SpriteIndex(oam, LINES);
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            for (int j = 0; j < 8; ++j) {
+                // Crowded lines have more than 10 sprites
+                int a = rng.nextInt(oam.size());
+                int v = a % 4 == 0 ? 16 + rng.nextInt(40) : rng.nextInt(256);
+                oam.write(a, v);
+                index.written(a);
+            }
+            assertSameSprites(oam, index, rng.nextBoolean() ? 8 : 16);
+        }
+    }
+}
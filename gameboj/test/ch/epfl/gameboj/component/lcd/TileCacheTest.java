@@ -0,0 +1,40 @@
+package ch.epfl.gameboj.component.lcd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.memory.Ram;
+
+class TileCacheTest {
+
+    @Test
+    void rowIsDecodedOnceUntilWritten() {
+        Ram videoRam = new Ram(0x2000);
+        TileCache c = new TileCache(videoRam);
+        videoRam.write(0x0012, 0b1000_0001);
+        videoRam.write(0x0013, 0b1100_0000);
+        assertEquals(0b0000_0011_1000_0001, c.row(0x8012, false));
+        assertEquals(0b1100_0000_1000_0001, c.row(0x8012, true));
+        assertEquals(1, c.misses());
+        assertEquals(1, c.hits());
+        // The cache only sees the writes it is told about
+        videoRam.write(0x0013, 0);
+        assertEquals(0b1100_0000_1000_0001, c.row(0x8012, true));
+        assertEquals(2, c.hits());
+        c.written(0x8013);
+        assertEquals(0b0000_0000_1000_0001, c.row(0x8012, false));
+        assertEquals(2, c.misses());
+    }
+
+    @Test
+    void writesOutsideTileDataAreIgnored() {
+        Ram videoRam = new Ram(0x2000);
+        TileCache c = new TileCache(videoRam);
+        c.row(0x97FE, false);
+        c.written(0x9800);
+        c.written(0x9FFF);
+        c.row(0x97FE, false);
+        assertEquals(1, c.misses());
+    }
+}